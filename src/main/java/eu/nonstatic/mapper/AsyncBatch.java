@@ -0,0 +1,99 @@
+package eu.nonstatic.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Maps a batch with at most maxConcurrency elements in flight, each worker pulling the next index until the batch is done.
+ * Results land at their source's index, so they come in the sources' order. Cancelling or failing the future stops the workers
+ * before their next element, the ones in flight being left to finish.
+ */
+final class AsyncBatch<F, T> {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncBatch.class);
+
+    /**
+     * Virtual threads when the runtime has them (Java 21+), the common pool otherwise
+     */
+    static final Executor DEFAULT_EXECUTOR = defaultExecutor();
+
+    private final List<? extends F> fromInstances;
+    private final Function<F, T> mapping;
+    private final Object[] results;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicInteger mappedCount = new AtomicInteger();
+    private final CompletableFuture<List<T>> future = new CompletableFuture<>();
+
+
+    private AsyncBatch(Collection<? extends F> fromInstances, Function<F, T> mapping) {
+        this.fromInstances = fromInstances instanceof RandomAccess ? (List<? extends F>) fromInstances : new ArrayList<>(fromInstances);
+        this.mapping = mapping;
+        this.results = new Object[this.fromInstances.size()];
+    }
+
+    /**
+     * @param maxConcurrency elements mapped at the same time, at most
+     */
+    static <F, T> CompletableFuture<List<T>> start(Collection<? extends F> fromInstances, Function<F, T> mapping, int maxConcurrency, Executor executor) {
+        if(maxConcurrency <= 0) {
+            throw new IllegalArgumentException("Max concurrency must be positive: " + maxConcurrency);
+        }
+        AsyncBatch<F, T> batch = new AsyncBatch<>(fromInstances, mapping);
+        if(batch.results.length == 0) {
+            batch.complete();
+        }
+        int workers = Math.min(maxConcurrency, batch.results.length);
+        try {
+            for (int w = 0; w < workers; w++) {
+                executor.execute(batch::work);
+            }
+        } catch (RejectedExecutionException e) {
+            batch.future.completeExceptionally(e); // workers already started stop
+        }
+        return batch.future;
+    }
+
+    private void work() {
+        int index;
+        while(!future.isDone() && (index = nextIndex.getAndIncrement()) < results.length) {
+            try {
+                results[index] = mapping.apply(fromInstances.get(index));
+            } catch (RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            if(mappedCount.incrementAndGet() == results.length) {
+                complete();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void complete() {
+        future.complete((List<T>) Arrays.asList(results)); // the last increment happened after every result was written
+    }
+
+    private static Executor defaultExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.debug("No virtual threads on this runtime, batches are mapped on the common pool");
+            return ForkJoinPool.commonPool();
+        }
+    }
+}
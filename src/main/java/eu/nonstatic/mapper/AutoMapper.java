@@ -3,17 +3,32 @@ package eu.nonstatic.mapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import static eu.nonstatic.mapper.GettersAndSetters.USING_SETTERS_DEFAULT;
-import static eu.nonstatic.mapper.MappingUtils.mapProperty;
+import static eu.nonstatic.mapper.MappingUtils.readProperty;
+import static eu.nonstatic.mapper.ReflectionUtils.findBuildLikeMethod;
 import static eu.nonstatic.mapper.ReflectionUtils.findBuilderMethod;
 import static eu.nonstatic.mapper.ReflectionUtils.isBuilderUsingSetters;
+import static eu.nonstatic.mapper.ReflectionUtils.isMappable;
+import static java.lang.reflect.Modifier.isPublic;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptySet;
 import static java.util.Objects.requireNonNull;
@@ -23,15 +38,32 @@ public class AutoMapper {
 
     private static final Logger log = LoggerFactory.getLogger(GettersAndSetters.class);
 
-    private final HashMap<Class<?>, GettersAndSetters> registry = new HashMap<>();
+    public static final int DEFAULT_TARGET_POOL_SIZE = 16;
+
+    private ClassRegistry registry = new ClassRegistry.Unbounded();
     private boolean autoRegister;
+    private IntrospectionIndex introspectionIndex;
+    private MapperMetrics metrics; // null when disabled, so that the hot path only pays for a null check
+    private PropertyProfiler propertyProfiler; // null when disabled
+    private final PlanCache<MappingPlan> plans = new PlanCache<>();
+    private final PlanCache<MappingPlan> superPlans = new PlanCache<>(); // getters only, by superclass, shared by the plans of its subclasses
+    final AtomicInteger planEpoch = new AtomicInteger(); // bumped whenever compiled plans may have gone stale, see MappingSite
+    private final PlanCache<ViewPlan> viewPlans = new PlanCache<>();
+    private final PlanCache<ColumnLayout> columnLayouts = new PlanCache<>(); // by (source class, ColumnSet)
+    private final PlanCache<BinaryLayout> binaryLayouts = new PlanCache<>(); // by (source class, BinaryLayout)
+    private final PlanCache<MapLayout> mapLayouts = new PlanCache<>(); // by (class or builder class, Map)
+    private final ResultCaches resultCaches = new ResultCaches();
+    final EnumConversions enumConversions = new EnumConversions();
+    private TargetPool targetPool = new TargetPool(DEFAULT_TARGET_POOL_SIZE);
 
 
     public AutoMapper() {
+        registry.setEvictionHook(this::dropPlans);
         setAutoRegister(true);
     }
 
     public AutoMapper(Class<?>... clazzz) {
+        registry.setEvictionHook(this::dropPlans);
         for (Class<?> clazz : clazzz) {
             registerClass(clazz, USING_SETTERS_DEFAULT);
         }
@@ -47,6 +79,97 @@ public class AutoMapper {
         return this;
     }
 
+    /**
+     * Bounds the registry, evicting the least recently used classes. Evicted classes get re-registered on demand
+     * (provided autoRegister is on, or through forced registrations), which costs a new introspection.
+     * Current registrations and counters are kept.
+     * @param maxSize max number of registered classes, 0 or less for no size limit
+     * @param maxIdle max time a class may stay registered without being used, null for no idle limit
+     * @return this
+     */
+    public AutoMapper setRegistryBounds(int maxSize, Duration maxIdle) {
+        this.registry = registry.transferTo(new ClassRegistry.Bounded(maxSize, maxIdle));
+        return this;
+    }
+
+    /**
+     * Back to an unbounded registry. Current registrations and counters are kept.
+     * @return this
+     */
+    public AutoMapper setRegistryUnbounded() {
+        this.registry = registry.transferTo(new ClassRegistry.Unbounded());
+        return this;
+    }
+
+    /**
+     * Registrations of indexed classes will resolve their accessors from the index rather than introspecting the classes.
+     * Classes not indexed, or not matching the index anymore, are still introspected.
+     * @param introspectionIndex null not to use any index
+     * @return this
+     */
+    public AutoMapper setIntrospectionIndex(IntrospectionIndex introspectionIndex) {
+        this.introspectionIndex = introspectionIndex;
+        return this;
+    }
+
+    /**
+     * Already compiled plans are dropped, so that every pair gets recorded from now on
+     * @param metrics {@link MapperMetrics#NONE} or null to disable
+     * @return this
+     */
+    public AutoMapper setMetrics(MapperMetrics metrics) {
+        this.metrics = metrics != MapperMetrics.NONE ? metrics : null;
+        plans.clear();
+        planEpoch.incrementAndGet();
+        return this;
+    }
+
+    public MapperMetrics getMetrics() {
+        return metrics != null ? metrics : MapperMetrics.NONE;
+    }
+
+    MapperMetrics metricsOrNull() {
+        return metrics;
+    }
+
+    /**
+     * Already compiled plans are dropped, so that every pair gets profiled from now on
+     * @param propertyProfiler null to disable
+     * @return this
+     */
+    public AutoMapper setPropertyProfiler(PropertyProfiler propertyProfiler) {
+        this.propertyProfiler = propertyProfiler;
+        plans.clear();
+        planEpoch.incrementAndGet();
+        return this;
+    }
+
+    public PropertyProfiler getPropertyProfiler() {
+        return propertyProfiler;
+    }
+
+    public AutoMapper setRegistrationListener(RegistrationListener listener) {
+        registry.setListener(listener);
+        return this;
+    }
+
+    public RegistryStats getRegistryStats() {
+        return registry.stats();
+    }
+
+    /**
+     * Enum props of different types are mapped by constant name, and enums to and from Strings by name too.
+     * This maps fromConstant to toConstant instead, eg: when names differ across domains. Plans already compiled follow,
+     * and cached results are dropped.
+     * A constant having no counterpart is skipped as incompatible.
+     * @throws IllegalArgumentException if both constants are of the same type
+     */
+    public <E extends Enum<E>, F extends Enum<F>> AutoMapper registerEnumMapping(E fromConstant, F toConstant) {
+        enumConversions.override(fromConstant, toConstant);
+        resultCaches.invalidateAll(); // they may have been mapped with the former conversion
+        return this;
+    }
+
 
     @Deprecated
     private GettersAndSetters registerClass(Class<?> clazz) {
@@ -60,13 +183,36 @@ public class AutoMapper {
      * @return
      */
     private GettersAndSetters registerClass(Class<?> clazz, boolean usingSetters) {
-        GettersAndSetters gs = GettersAndSetters.of(clazz, usingSetters);
-        registry.put(clazz, gs);
+        long start = System.nanoTime();
+        GettersAndSetters gs = introspectionIndex != null ? introspectionIndex.resolve(clazz, usingSetters) : null;
+        if(gs == null) {
+            gs = GettersAndSetters.of(clazz, usingSetters);
+        }
+        long nanos = System.nanoTime() - start;
+        registry.registered(clazz, gs, nanos);
+        planEpoch.incrementAndGet();
+        if(metrics != null) {
+            metrics.registration(clazz, nanos);
+        }
         return gs;
     }
 
     public GettersAndSetters unregisterClass(Class<?> clazz) {
-        return registry.remove(requireNonNull(clazz));
+        GettersAndSetters gs = registry.remove(requireNonNull(clazz));
+        dropPlans(clazz);
+        return gs;
+    }
+
+    private void dropPlans(Class<?> clazz) {
+        plans.drop(clazz);
+        superPlans.drop(clazz);
+        viewPlans.drop(clazz);
+        columnLayouts.drop(clazz);
+        columnLayouts.forEach(layout -> layout.dropSetters(clazz)); // layouts are by source class, their setters by target class
+        binaryLayouts.drop(clazz);
+        binaryLayouts.forEach(layout -> layout.columns.dropSetters(clazz));
+        mapLayouts.drop(clazz);
+        planEpoch.incrementAndGet();
     }
 
 
@@ -78,6 +224,13 @@ public class AutoMapper {
         return registerOnDemand(clazz, usingSetters, this.autoRegister);
     }
 
+    /**
+     * @return an estimation of the heap retained by the registered classes' metadata
+     */
+    public FootprintReport footprint() {
+        return new FootprintReport(registry.snapshot());
+    }
+
     public GettersAndSetters getRegistrationForced(Class<?> clazz) {
         return getRegistrationForced(clazz, USING_SETTERS_DEFAULT);
     }
@@ -87,10 +240,17 @@ public class AutoMapper {
     }
 
     private GettersAndSetters registerOnDemand(Class<?> clazz, boolean usingSetters, boolean autoRegister) {
+        GettersAndSetters gs = registry.lookup(clazz);
+        if(metrics != null) {
+            if(gs != null) {
+                metrics.registryHit(clazz);
+            } else {
+                metrics.registryMiss(clazz);
+            }
+        }
         if(autoRegister) {
-            return registry.computeIfAbsent(clazz, c -> registerClass(clazz, usingSetters));
+            return gs != null ? gs : registerClass(clazz, usingSetters); // not computeIfAbsent: registerClass puts into the registry itself
         } else {
-            GettersAndSetters gs = registry.get(clazz);
             if(gs != null) {
                 return gs;
             } else {
@@ -100,6 +260,171 @@ public class AutoMapper {
     }
 
 
+    /**
+     * Registers classes (and their builder if they have one) in parallel on the common pool,
+     * so that the first mappings don't pay for the introspection.
+     * @param classes
+     */
+    public void warmUp(Collection<Class<?>> classes) {
+        warmUp(classes, ForkJoinPool.commonPool());
+    }
+
+    public void warmUp(Collection<Class<?>> classes, ForkJoinPool pool) {
+        inParallel(pool, classes, clazz -> {
+            getRegistrationForced(clazz);
+            findBuilderContext(clazz);
+        });
+    }
+
+    /**
+     * Registers classes and compiles the plans for each pair in parallel on the common pool.
+     * @param pairs
+     */
+    public void warmUpPairs(Collection<ClassPair> pairs) {
+        warmUpPairs(pairs, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Registers classes and compiles the plans for each pair in parallel.
+     * @param pairs
+     * @param iterations how many synthetic mappings to run for each pair, from a no-args constructed source instance,
+     *                   so that the reflective accessors get generated and the mapping paths JIT-compiled. 0 for none.
+     *                   Pairs whose source can't be instantiated, or whose synthetic mapping fails, are skipped.
+     * @param pool
+     */
+    public void warmUpPairs(Collection<ClassPair> pairs, int iterations, ForkJoinPool pool) {
+        inParallel(pool, pairs, pair -> warmUpPair(pair, iterations));
+    }
+
+    private void warmUpPair(ClassPair pair, int iterations) {
+        Class<?> fromClass = pair.getFromClass(), toClass = pair.getToClass();
+        GettersAndSetters gsFrom = getRegistrationForced(fromClass);
+        boolean toInstance = isMappable(toClass);
+        if(toInstance) {
+            getPlan(gsFrom, getRegistrationForced(toClass));
+        }
+        GettersAndSetters.BuilderContext builderContext = findBuilderContext(toClass);
+        if(builderContext != null) {
+            getPlan(gsFrom, builderContext.gettersAndSetters);
+        }
+
+        if(iterations > 0 && isMappable(fromClass)) {
+            try {
+                Object fromInstance = fromClass.getDeclaredConstructor().newInstance();
+                for (int i = 0; i < iterations; i++) {
+                    if(toInstance) {
+                        mapToInstance(fromInstance, toClass);
+                    }
+                    if(builderContext != null) {
+                        mapToBuilder(fromInstance, toClass);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Synthetic warm-up of {} failed, skipping it: {}", pair, e.toString());
+            }
+        }
+    }
+
+    private static <E> void inParallel(ForkJoinPool pool, Collection<E> elements, Consumer<E> action) {
+        // a parallel stream runs in the pool its terminal operation is called from
+        pool.submit(() -> elements.parallelStream().forEach(action)).join();
+    }
+
+
+    MappingPlan getPlan(GettersAndSetters gsFrom, GettersAndSetters gsTo) {
+        MappingPlan plan = plans.get(gsFrom.targetClass, gsTo.targetClass);
+        if(plan == null || !plan.isCompiledFor(gsFrom, gsTo, null)) { // classes may have been re-registered since
+            MappingPlan superPlan = getSuperPlan(gsFrom.targetClass.getSuperclass(), gsTo);
+            plan = MappingPlan.compile(gsFrom, gsTo, null, superPlan, enumConversions, metrics, propertyProfiler);
+            plans.put(gsFrom.targetClass, gsTo.targetClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * The plans of subclasses share the bindings of their superclass' one, so that a hierarchy is bound once per level
+     * rather than once per subclass. Those plans only hold getters and are never applied as is.
+     * Non-public superclasses aren't shared: their getters can't be called from here, only their public subclasses' bridges can.
+     * @return null when superclass has no getter to share
+     */
+    private MappingPlan getSuperPlan(Class<?> superclass, GettersAndSetters gsTo) {
+        if(superclass == null || superclass == Object.class || !isPublic(superclass.getModifiers())) {
+            return null;
+        }
+        MappingPlan superPlan = superPlans.get(superclass, gsTo.targetClass);
+        if(superPlan == null || superPlan.gsTo != gsTo) {
+            GettersAndSetters gsSuper = registry.get(superclass);
+            if(gsSuper == null) { // not registering it, it may not even be mappable
+                gsSuper = GettersAndSetters.of(superclass, true, false, true);
+            }
+            if(gsSuper.getterCount() == 0) {
+                return null; // neither will its own superclasses have
+            }
+            superPlan = MappingPlan.compile(gsSuper, gsTo, null, getSuperPlan(superclass.getSuperclass(), gsTo), enumConversions, null, null);
+            superPlans.put(superclass, gsTo.targetClass, superPlan);
+        }
+        return superPlan;
+    }
+
+    /**
+     * @return an immutable mapper of the pairs which plans were compiled so far (eg: by {@link #warmUpPairs}), see {@link FrozenMapper}
+     */
+    public FrozenMapper freeze() {
+        return freeze(compiledPairs(plans));
+    }
+
+    /**
+     * Compiles the plans of pairs (to instances and to builders, whichever toClass supports) and freezes them.
+     * They are compiled apart from this mapper's ones, against a snapshot of its enum mappings, so that registering
+     * enum mappings afterwards doesn't affect them. This mapper is left as is and may still be used.
+     * @throws IllegalArgumentException if a target class has neither a no-args constructor nor a builder
+     */
+    public FrozenMapper freeze(Collection<ClassPair> pairs) {
+        EnumConversions frozenConversions = enumConversions.snapshot();
+        return new FrozenMapper(pairs, this, (gsFrom, gsTo, toClass) -> MappingPlan.compile(gsFrom, gsTo, null, frozenConversions, null, null));
+    }
+
+    /**
+     * @return the (source class, target class) pairs of the plans in that cache, builders standing for their target class
+     */
+    Set<ClassPair> compiledPairs(PlanCache<MappingPlan> plans) {
+        Map<Class<?>, Class<?>> builtClasses = new HashMap<>();
+        for (GettersAndSetters gs : registry.snapshot().values()) {
+            if(gs.builderContext != null) {
+                builtClasses.put(gs.builderContext.builderClass, gs.targetClass);
+            }
+        }
+        Set<ClassPair> pairs = new LinkedHashSet<>();
+        plans.forEach(plan -> {
+            Class<?> toClass = plan.gsTo.targetClass;
+            pairs.add(ClassPair.of(plan.gsFrom.targetClass, builtClasses.getOrDefault(toClass, toClass)));
+        });
+        return pairs;
+    }
+
+    /**
+     * @return a call site mapping sources of any class to new instances of toClass, see {@link MappingSite}
+     */
+    public <T> MappingSite<T> site(Class<T> toClass) {
+        return new MappingSite<>(this, toClass);
+    }
+
+    /**
+     * Describes, without mapping anything, what mapping fromClass to toClass does
+     * (registering both if needed). The same is logged in debug when the plan is compiled.
+     */
+    public PlanExplanation explain(Class<?> fromClass, Class<?> toClass, String... excludedProps) {
+        return getPlan(getRegistrationForced(fromClass), getRegistrationForced(toClass)).explain(asList(excludedProps));
+    }
+
+    /**
+     * Same as {@link #explain(Class, Class, String...)}, targeting toClass' builder
+     */
+    public PlanExplanation explainToBuilder(Class<?> fromClass, Class<?> toClass, String... excludedProps) {
+        return getPlan(getRegistrationForced(fromClass), getBuilderContext(toClass).gettersAndSetters).explain(asList(excludedProps));
+    }
+
+
     public <F, T> T map(F fromInstance, T toInstance) {
         return map(fromInstance, toInstance, emptySet(), identity());
     }
@@ -113,6 +438,269 @@ public class AutoMapper {
         return map(fromInstance, toInstance, excludedProps, identity());
     }
 
+    /**
+     * Only maps the projected props, only their getters are called
+     */
+    public <F, T> T map(F fromInstance, T toInstance, Projection projection) {
+        GettersAndSetters gsFrom = getRegistration(fromInstance.getClass()), gsTo = getRegistration(toInstance.getClass());
+        return mapProjected(fromInstance, gsFrom, toInstance, gsTo, projection);
+    }
+
+    /**
+     * Change-detecting merge: only writes the props which value differs from toInstance's, see {@link #mapChanged(Object, Object, boolean)}
+     */
+    public <F, T> ChangedProps mapChanged(F fromInstance, T toInstance) {
+        return mapChanged(fromInstance, toInstance, false);
+    }
+
+    /**
+     * Change-detecting merge: each source value is compared (equals) with the target's current one, read with its getter,
+     * and only written when different. Target props without a getter are always written.
+     * @param skipNulls true not to write null source values, patch-like
+     * @return the written target props
+     */
+    public <F, T> ChangedProps mapChanged(F fromInstance, T toInstance, boolean skipNulls) {
+        GettersAndSetters gsFrom = getRegistration(fromInstance.getClass()), gsTo = getRegistration(toInstance.getClass());
+        return getPlan(gsFrom, gsTo).applyChanged(fromInstance, toInstance, skipNulls);
+    }
+
+    /**
+     * Whether a and b, possibly of different classes, agree on the props a maps to b and b has a getter for.
+     * Uses the same compiled plan as mapping a to b, and doesn't allocate beyond the boxing of primitive values.
+     */
+    public boolean equalsOn(Object a, Object b) {
+        if(a == null || b == null) {
+            return a == b;
+        }
+        return getPlan(getRegistration(a.getClass()), getRegistration(b.getClass())).equalsOn(a, b);
+    }
+
+    /**
+     * Hash of a's readable and writable props, consistent with {@link #equalsOn} between instances of a's class
+     */
+    public int hashOn(Object a) {
+        if(a == null) {
+            return 0;
+        }
+        GettersAndSetters gs = getRegistration(a.getClass());
+        return getPlan(gs, gs).hashOn(a);
+    }
+
+    /**
+     * @return the props of b which value differs from the one a would map to it, b's prop ids being given by {@link ChangedProps#toBitSet()}
+     */
+    public ChangedProps diff(Object a, Object b) {
+        return getPlan(getRegistration(a.getClass()), getRegistration(b.getClass())).diff(a, b);
+    }
+
+    /**
+     * Read-only view of fromInstance through viewInterface, nothing is copied: each getter of the view calls the source's
+     * getter of the same prop. Default methods are called as is, equals and hashCode are the view's identity's.
+     * @throws IllegalArgumentException if viewInterface has abstract methods which aren't getters backed by fromInstance's class
+     */
+    public <F, V> V view(F fromInstance, Class<V> viewInterface) {
+        return view(fromInstance, viewInterface, null);
+    }
+
+    /**
+     * @param memoized null or the (expensive) props which source getters are called at most once per view
+     */
+    public <F, V> V view(F fromInstance, Class<V> viewInterface, Projection memoized) {
+        return getViewPlan(getRegistration(fromInstance.getClass()), viewInterface).view(fromInstance, memoized);
+    }
+
+    ViewPlan getViewPlan(GettersAndSetters gsFrom, Class<?> viewInterface) {
+        ViewPlan plan = viewPlans.get(gsFrom.targetClass, viewInterface);
+        if(plan == null || !plan.isCompiledFor(gsFrom)) {
+            plan = ViewPlan.compile(gsFrom, viewInterface);
+            viewPlans.put(gsFrom.targetClass, viewInterface, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Maps into a target reused from a previous mapping: the target props this mapping may not write are first reset
+     * to their default values (null, 0, false), so that nothing is left over.
+     */
+    public <F, T> T mapReusing(F fromInstance, T toInstance) {
+        GettersAndSetters gsFrom = getRegistration(fromInstance.getClass()), gsTo = getRegistration(toInstance.getClass());
+        MappingPlan plan = getPlan(gsFrom, gsTo);
+        plan.reset(toInstance);
+        plan.apply(fromInstance, toInstance, null);
+        return toInstance;
+    }
+
+    /**
+     * Same as {@link #mapToInstance(Object, Class)}, drawing the target from the calling thread's pool when one was released,
+     * see {@link #release(Object)}
+     */
+    public <F, T> T mapToPooled(F fromInstance, Class<T> toClass) {
+        T toInstance = targetPool.poll(toClass);
+        return toInstance != null ? mapReusing(fromInstance, toInstance) : map(fromInstance, newInstance(toClass));
+    }
+
+    /**
+     * Gives a target back to the calling thread's pool, for {@link #mapToPooled(Object, Class)} to reuse it.
+     * The caller must not use that instance anymore.
+     * @return false if the pool for that class is full, the instance then being left to the GC
+     */
+    public boolean release(Object toInstance) {
+        return targetPool.offer(requireNonNull(toInstance));
+    }
+
+    /**
+     * Drops the released targets of the calling thread, eg: when a worker thread is done
+     */
+    public void clearTargetPool() {
+        targetPool.clear();
+    }
+
+    /**
+     * @param maxPerClass targets pooled per class and per thread, 0 to disable pooling. Previously released targets are dropped.
+     */
+    public AutoMapper setTargetPoolSize(int maxPerClass) {
+        this.targetPool = new TargetPool(maxPerClass);
+        return this;
+    }
+
+    /**
+     * Maps a batch into columns, one per readable prop of fromClass, primitive props being read without boxing into primitive arrays.
+     * @param fromInstances instances of fromClass (or subclasses), no null
+     */
+    public <F> ColumnSet mapToColumns(Collection<? extends F> fromInstances, Class<F> fromClass) {
+        return getColumnLayout(getRegistration(fromClass)).write(fromInstances);
+    }
+
+    /**
+     * Maps each row of columns to a new instance of toClass, by prop name, primitive values being passed without boxing
+     * when toClass' setter takes the same primitive type (or a wider one).
+     */
+    public <T> List<T> mapFromColumns(ColumnSet columns, Class<T> toClass) {
+        MethodHandle[] setters = columns.layout.settersFor(getRegistration(toClass));
+        List<T> toInstances = new ArrayList<>(columns.size());
+        for (int row = 0; row < columns.size(); row++) {
+            T toInstance = newInstance(toClass);
+            columns.layout.read(columns, row, toInstance, setters);
+            toInstances.add(toInstance);
+        }
+        return toInstances;
+    }
+
+    /**
+     * Same as {@link #mapFromColumns(ColumnSet, Class)}, to one builder of toClass per row
+     */
+    public <B> List<B> mapFromColumnsToBuilders(ColumnSet columns, Class<?> toClass) {
+        MethodHandle[] setters = columns.layout.settersFor(getBuilderContext(toClass).gettersAndSetters);
+        List<B> builders = new ArrayList<>(columns.size());
+        for (int row = 0; row < columns.size(); row++) {
+            BuilderWrapper<B> builderWrapper = getContextualizedBuilder(toClass);
+            columns.layout.read(columns, row, builderWrapper.builder, setters);
+            builders.add(builderWrapper.builder);
+        }
+        return builders;
+    }
+
+    ColumnLayout getColumnLayout(GettersAndSetters gsFrom) {
+        ColumnLayout layout = columnLayouts.get(gsFrom.targetClass, ColumnSet.class);
+        if(layout == null || !layout.isCompiledFor(gsFrom)) {
+            layout = ColumnLayout.compile(gsFrom);
+            columnLayouts.put(gsFrom.targetClass, ColumnSet.class, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * @return the binary record layout of clazz' readable props, see {@link BinaryLayout}
+     */
+    public BinaryLayout binaryLayout(Class<?> clazz) {
+        GettersAndSetters gs = getRegistration(clazz);
+        BinaryLayout layout = binaryLayouts.get(clazz, BinaryLayout.class);
+        if(layout == null || !layout.isCompiledFor(gs)) {
+            layout = BinaryLayout.compile(getColumnLayout(gs));
+            binaryLayouts.put(clazz, BinaryLayout.class, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * Writes fromInstance as a record of its class' {@link BinaryLayout} at the buffer's position, which is then moved after it.
+     * Direct or memory-mapped buffers keep the data off-heap.
+     * @return the size of the record
+     */
+    public int mapToBinary(Object fromInstance, ByteBuffer buffer) {
+        return binaryLayout(fromInstance.getClass()).write(fromInstance, buffer);
+    }
+
+    /**
+     * Maps the record at the buffer's position to a new instance of toClass, by prop name, then moves the position after the record.
+     * @param layout the layout the record was written with
+     */
+    public <T> T mapFromBinary(ByteBuffer buffer, BinaryLayout layout, Class<T> toClass) {
+        T toInstance = newInstance(toClass);
+        readBinary(buffer, layout, toInstance, getRegistration(toClass));
+        return toInstance;
+    }
+
+    /**
+     * Same as {@link #mapFromBinary(ByteBuffer, BinaryLayout, Class)}, to a builder of toClass
+     */
+    public <B> B mapFromBinaryToBuilder(ByteBuffer buffer, BinaryLayout layout, Class<?> toClass) {
+        BuilderWrapper<B> builderWrapper = getContextualizedBuilder(toClass);
+        readBinary(buffer, layout, builderWrapper.builder, builderWrapper.gettersAndSetters);
+        return builderWrapper.builder;
+    }
+
+    private void readBinary(ByteBuffer buffer, BinaryLayout layout, Object toInstanceOrBuilder, GettersAndSetters gsTo) {
+        int start = buffer.position();
+        layout.read(buffer, start, toInstanceOrBuilder, layout.columns.settersFor(gsTo));
+        buffer.position(start + layout.sizeAt(buffer, start));
+    }
+
+    /**
+     * @return a new map of fromInstance's readable props by name, in name order, null values included
+     */
+    public Map<String, Object> mapToMap(Object fromInstance) {
+        MapLayout layout = getMapLayout(getRegistration(fromInstance.getClass()));
+        return layout.write(fromInstance, layout.newMap());
+    }
+
+    /**
+     * Puts fromInstance's readable props by name into toMap
+     */
+    public <M extends Map<String, Object>> M mapToMap(Object fromInstance, M toMap) {
+        return getMapLayout(getRegistration(fromInstance.getClass())).write(fromInstance, toMap);
+    }
+
+    /**
+     * Maps the entries of fromMap to a new instance of toClass, by prop name. Keys without a setter are ignored,
+     * absent keys leave their prop untouched. JSON-ish values are coerced: numbers to any numeric type
+     * (integral types only taking integral values which fit), Strings to enums by constant name.
+     * Values which can't be coerced are skipped.
+     */
+    public <T> T mapFromMap(Map<String, ?> fromMap, Class<T> toClass) {
+        T toInstance = newInstance(toClass);
+        getMapLayout(getRegistration(toClass)).read(fromMap, toInstance);
+        return toInstance;
+    }
+
+    /**
+     * Same as {@link #mapFromMap(Map, Class)}, to a builder of toClass
+     */
+    public <B> B mapFromMapToBuilder(Map<String, ?> fromMap, Class<?> toClass) {
+        BuilderWrapper<B> builderWrapper = getContextualizedBuilder(toClass);
+        getMapLayout(builderWrapper.gettersAndSetters).read(fromMap, builderWrapper.builder);
+        return builderWrapper.builder;
+    }
+
+    MapLayout getMapLayout(GettersAndSetters gs) {
+        MapLayout layout = mapLayouts.get(gs.targetClass, Map.class);
+        if(layout == null || !layout.isCompiledFor(gs)) {
+            layout = MapLayout.compile(gs, enumConversions);
+            mapLayouts.put(gs.targetClass, Map.class, layout);
+        }
+        return layout;
+    }
+
     protected <F, T, R> R map(F fromInstance, T toInstance, Collection<String> excludedProps, Function<T, R> postProcessing) {
         GettersAndSetters gsFrom = getRegistration(fromInstance.getClass()), gsTo = getRegistration(toInstance.getClass());
         return mapInternal(fromInstance, gsFrom, toInstance, gsTo, excludedProps, postProcessing);
@@ -121,6 +709,10 @@ public class AutoMapper {
 
 
     public <F, T> T mapToInstance(F fromInstance, Class<T> toClass) {
+        ResultCaches.PairCache cache = resultCaches.get(fromInstance.getClass(), toClass);
+        if(cache != null) {
+            return cache.get(fromInstance, () -> mapToInstance(fromInstance, toClass, emptySet(), identity()));
+        }
         return mapToInstance(fromInstance, toClass, emptySet(), identity());
     }
 
@@ -132,9 +724,72 @@ public class AutoMapper {
         return mapToInstance(fromInstance, toClass, excludedProps, identity());
     }
 
+    public <F, T> T mapToInstance(F fromInstance, Class<T> toClass, Projection projection) {
+        return map(fromInstance, newInstance(toClass), projection);
+    }
+
     protected <F, T, R> R mapToInstance(F fromInstance, Class<T> toClass, Collection<String> excludedProps, Function<T, R> postProcessing) {
+        return map(fromInstance, newInstance(toClass), excludedProps, postProcessing);
+    }
+
+    /**
+     * Maps each source to a new instance of toClass, null sources giving null targets.
+     * Plans are looked up once per run of sources of the same class rather than once per source.
+     */
+    public <F, T> List<T> mapAll(Collection<? extends F> fromInstances, Class<T> toClass) {
+        return mapAll(fromInstances, toClass, null);
+    }
+
+    /**
+     * Same as {@link #mapAll(Collection, Class)}, sharing equal values of the deduplicated props across the targets
+     * @param deduplication null for none
+     */
+    public <F, T> List<T> mapAll(Collection<? extends F> fromInstances, Class<T> toClass, Deduplication deduplication) {
+        GettersAndSetters gsTo = getRegistration(toClass);
+        List<T> toInstances = new ArrayList<>(fromInstances.size());
+        Class<?> planFromClass = null;
+        MappingPlan plan = null;
+        for (F fromInstance : fromInstances) {
+            if(fromInstance == null) {
+                toInstances.add(null);
+                continue;
+            }
+            if(fromInstance.getClass() != planFromClass) {
+                planFromClass = fromInstance.getClass();
+                plan = getPlan(getRegistration(planFromClass), gsTo);
+                if(deduplication != null) {
+                    plan = plan.deduplicate(deduplication, metrics, propertyProfiler);
+                }
+            }
+            T toInstance = newInstance(toClass);
+            plan.apply(fromInstance, toInstance, null);
+            toInstances.add(toInstance);
+        }
+        return toInstances;
+    }
+
+    /**
+     * Maps each source to a new instance of toClass asynchronously, see {@link #mapAllAsync(Collection, Class, int, Executor)}.
+     * Runs on virtual threads when the runtime has them (Java 21+), on the common pool otherwise.
+     */
+    public <F, T> CompletableFuture<List<T>> mapAllAsync(Collection<? extends F> fromInstances, Class<T> toClass, int maxConcurrency) {
+        return mapAllAsync(fromInstances, toClass, maxConcurrency, AsyncBatch.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * Maps each source to a new instance of toClass, at most maxConcurrency at the same time, which overlaps the latency
+     * of slow getters (eg: lazy loaded associations). Results come in the sources' order, null sources giving null targets.
+     * The future fails with the first mapping exception. Cancelling it, or its failure, stops starting new mappings.
+     * @param maxConcurrency sources being mapped at the same time, at most
+     * @param executor where the mappings run
+     */
+    public <F, T> CompletableFuture<List<T>> mapAllAsync(Collection<? extends F> fromInstances, Class<T> toClass, int maxConcurrency, Executor executor) {
+        return AsyncBatch.start(fromInstances, (F fromInstance) -> fromInstance != null ? mapToInstance(fromInstance, toClass) : null, maxConcurrency, executor);
+    }
+
+    static <T> T newInstance(Class<T> toClass) {
         try {
-            return map(fromInstance, toClass.getDeclaredConstructor().newInstance(), excludedProps, postProcessing);
+            return toClass.getDeclaredConstructor().newInstance();
         } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) { // are you POJO enough?
             throw new RuntimeException(e);
         }
@@ -156,6 +811,12 @@ public class AutoMapper {
         return mapToBuilder(fromInstance, toClass, excludedProps, identity());
     }
 
+    public <B> B mapToBuilder(Object fromInstance, Class<?> toClass, Projection projection) {
+        GettersAndSetters gsFrom = getRegistration(fromInstance.getClass());
+        BuilderWrapper<B> builderWrapper = getContextualizedBuilder(toClass);
+        return mapProjected(fromInstance, gsFrom, builderWrapper.builder, builderWrapper.gettersAndSetters, projection);
+    }
+
     @SuppressWarnings("unchecked")
     protected <B> B mapToBuilder(Object fromInstance, Class<?> toClass, Collection<String> excludedProps, Function<B, B> postProcessing) {
         GettersAndSetters gsFrom = getRegistration(fromInstance.getClass());
@@ -167,25 +828,99 @@ public class AutoMapper {
     }
 
 
+    /**
+     * Maps to toClass' builder, then builds it. Results are cached when enabled for that pair, see {@link #cacheResults}
+     */
+    public <F, T> T mapToBuilt(F fromInstance, Class<T> toClass) {
+        ResultCaches.PairCache cache = resultCaches.get(fromInstance.getClass(), toClass);
+        if(cache != null) {
+            return cache.get(fromInstance, () -> build(mapToBuilder(fromInstance, toClass), toClass));
+        }
+        return build(mapToBuilder(fromInstance, toClass), toClass);
+    }
+
+    <T> T build(Object builder, Class<T> toClass) {
+        GettersAndSetters.BuilderContext builderContext = getBuilderContext(toClass);
+        Method buildMethod = builderContext.buildMethod;
+        if(buildMethod == null) {
+            buildMethod = findBuildLikeMethod(builderContext.builderClass, toClass);
+            if(buildMethod == null) {
+                throw new IllegalArgumentException("No build method for " + toClass.getName() + " on " + builderContext.builderClass.getName());
+            }
+            builderContext.buildMethod = buildMethod;
+        }
+        return toClass.cast(readProperty(builder, buildMethod));
+    }
+
+    /**
+     * Marks classes as immutable, their instances being safe to share once mapped, hence to cache
+     */
+    public AutoMapper declareImmutable(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            resultCaches.declareImmutable(clazz);
+        }
+        return this;
+    }
+
+    /**
+     * Caches the results of {@link #mapToInstance(Object, Class)} and {@link #mapToBuilt(Object, Class)} for that pair,
+     * so that mapping the same source again is a lookup. Only for targets declared immutable.
+     * @throws IllegalArgumentException if toClass wasn't declared immutable
+     */
+    public AutoMapper cacheResults(Class<?> fromClass, Class<?> toClass, ResultCacheOptions options) {
+        resultCaches.enable(fromClass, toClass, options);
+        return this;
+    }
+
+    public AutoMapper uncacheResults(Class<?> fromClass, Class<?> toClass) {
+        resultCaches.disable(fromClass, toClass);
+        return this;
+    }
+
+    /**
+     * @return the result cache counters of that pair, or null if its results aren't cached
+     */
+    public ResultCacheStats getResultCacheStats(Class<?> fromClass, Class<?> toClass) {
+        return resultCaches.stats(fromClass, toClass);
+    }
+
+    @SuppressWarnings("unchecked")
     <B> BuilderWrapper<B> getContextualizedBuilder(Class<?> toClass) {
         try {
-            B builderInstance;
+            GettersAndSetters.BuilderContext builderContext = getBuilderContext(toClass);
+            B builderInstance = (B)builderContext.method.invoke(null);
+            return new BuilderWrapper<>(builderInstance, builderContext);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    GettersAndSetters.BuilderContext getBuilderContext(Class<?> toClass) {
+        try {
             GettersAndSetters gsTo = getRegistrationForced(toClass); // No matter how autoRegister is set
             GettersAndSetters.BuilderContext builderContext = gsTo.builderContext;
 
+            if(builderContext == null && introspectionIndex != null) {
+                builderContext = introspectionIndex.resolveBuilder(toClass, this::getRegistrationForced);
+                if(builderContext != null) {
+                    gsTo.setBuilderContext(builderContext);
+                }
+            }
+
             if(builderContext == null) {
+                long start = System.nanoTime();
                 Method builderMethod = findBuilderMethod(toClass);
-                builderInstance = (B)builderMethod.invoke(null);// NOT builderMethod.getReturnType(), it may be abstract, whereas calling the builder method will obviously give a concrete instance, which is what we're actually mapping to.
+                Object builderInstance = builderMethod.invoke(null);// NOT builderMethod.getReturnType(), it may be abstract, whereas calling the builder method will obviously give a concrete instance, which is what we're actually mapping to.
                 // We needed to build to know what to register
                 Class<?> builderClass = builderInstance.getClass();
                 boolean usingSetters = isBuilderUsingSetters(toClass);
                 GettersAndSetters builderClassGS = getRegistrationForced(builderClass, usingSetters);// No matter how autoRegister is set
                 gsTo.setBuilderContext(builderContext = new GettersAndSetters.BuilderContext(builderClass, builderMethod, builderClassGS));
-            } else {
-                builderInstance = (B)builderContext.method.invoke(null);
+                if(metrics != null) {
+                    metrics.builderDiscovery(toClass, System.nanoTime() - start);
+                }
             }
-
-            return new BuilderWrapper<>(builderInstance, builderContext);
+            return builderContext;
         }
         catch(NoSuchMethodException e) {
             throw new IllegalArgumentException(e);
@@ -194,6 +929,17 @@ public class AutoMapper {
         }
     }
 
+    /**
+     * @return the builder context of toClass, or null if it has no builder
+     */
+    GettersAndSetters.BuilderContext findBuilderContext(Class<?> toClass) {
+        try {
+            return getBuilderContext(toClass);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     class BuilderWrapper<B> {
         B builder; // builder instance
         GettersAndSetters gettersAndSetters;
@@ -208,22 +954,16 @@ public class AutoMapper {
         if(fromInstance != null && toInstanceOrBuilder != null) {
             gsFrom.checkGettersContain(excludedProps);
 
-            for (Map.Entry<String, Method> gEntry : gsFrom.getters.entrySet()) {
-                String propertyName = gEntry.getKey();
-                if(excludedProps.contains(propertyName)) {
-                    log.debug("Skipping excluded prop {}", propertyName);
-                } else {
-                    Method setter = gsTo.setters.get(propertyName);
-                    if (setter != null) {
-                        Method getter = gEntry.getValue();
-                        mapProperty(fromInstance, gsFrom.getTargetClassName(), getter, propertyName, toInstanceOrBuilder, gsTo.getTargetClassName(), setter, propertyName);
-                    } else {
-                        log.debug("No match for getter {}.{} into {}", gsFrom.getTargetClassName(), propertyName, gsTo.getTargetClassName());
-                    }
-                }
-            }
+            getPlan(gsFrom, gsTo).apply(fromInstance, toInstanceOrBuilder, excludedProps);
         }
 
         return postProcessing.apply(toInstanceOrBuilder);
     }
+
+    <F, T> T mapProjected(F fromInstance, GettersAndSetters gsFrom, T toInstanceOrBuilder, GettersAndSetters gsTo, Projection projection) {
+        if(fromInstance != null && toInstanceOrBuilder != null) {
+            getPlan(gsFrom, gsTo).project(projection, metrics, propertyProfiler).apply(fromInstance, toInstanceOrBuilder, null);
+        }
+        return toInstanceOrBuilder;
+    }
 }
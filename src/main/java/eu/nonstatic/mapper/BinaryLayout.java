@@ -0,0 +1,404 @@
+package eu.nonstatic.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static eu.nonstatic.mapper.ColumnLayout.BOOLEAN;
+import static eu.nonstatic.mapper.ColumnLayout.BYTE;
+import static eu.nonstatic.mapper.ColumnLayout.CHAR;
+import static eu.nonstatic.mapper.ColumnLayout.DOUBLE;
+import static eu.nonstatic.mapper.ColumnLayout.FLOAT;
+import static eu.nonstatic.mapper.ColumnLayout.INT;
+import static eu.nonstatic.mapper.ColumnLayout.LONG;
+import static eu.nonstatic.mapper.ColumnLayout.SHORT;
+import static eu.nonstatic.mapper.ColumnLayout.kindOf;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Flat binary record layout of the readable props of a class, for heap, direct or memory-mapped {@link ByteBuffer}s.
+ * A record is a fixed-size section followed by the variable-length data of its Strings:
+ * <ul>
+ *     <li>primitives: their value, booleans on 1 byte</li>
+ *     <li>wrappers: 1 byte null flag (0 for null), then the primitive value</li>
+ *     <li>enums: the ordinal as an int, -1 for null</li>
+ *     <li>Strings: an int offset to their data from the start of the record, -1 for null;
+ *     their data being the UTF-8 bytes length as an int, then the bytes</li>
+ * </ul>
+ * Props of other types aren't part of the layout. The buffer's byte order is used as is.
+ */
+public final class BinaryLayout {
+
+    private static final int BOXED = 9, ENUM = 10, STRING = 11;
+    private static final int[] PRIMITIVE_BYTES = {0, 1, 1, 2, 2, 4, 8, 4, 8}; // by ColumnLayout kind
+    private static final int NULL_OFFSET = -1;
+
+    final ColumnLayout columns;
+    private final String[] props;
+    private final int[] columnIndexes; // field => column
+    private final int[] encodings; // field => primitive kind, BOXED, ENUM or STRING
+    private final int[] boxedKinds; // field => primitive kind of BOXED fields
+    private final int[] offsets; // field => offset in the fixed section
+    private final Object[][] enumConstants; // field => constants of ENUM fields
+    private final int fixedSize;
+    private final boolean variableSize;
+
+
+    private BinaryLayout(ColumnLayout columns) {
+        this.columns = columns;
+        List<Integer> fields = new ArrayList<>();
+        for (int c = 0; c < columns.types.length; c++) {
+            if(encodingOf(columns.types[c]) >= 0) {
+                fields.add(c);
+            }
+        }
+        int count = fields.size();
+        this.props = new String[count];
+        this.columnIndexes = new int[count];
+        this.encodings = new int[count];
+        this.boxedKinds = new int[count];
+        this.offsets = new int[count];
+        this.enumConstants = new Object[count][];
+        int offset = 0;
+        boolean strings = false;
+        for (int f = 0; f < count; f++) {
+            int c = fields.get(f);
+            Class<?> type = columns.types[c];
+            props[f] = columns.props[c];
+            columnIndexes[f] = c;
+            encodings[f] = encodingOf(type);
+            offsets[f] = offset;
+            switch (encodings[f]) {
+                case BOXED:
+                    boxedKinds[f] = kindOf(unwrap(type));
+                    offset += 1 + PRIMITIVE_BYTES[boxedKinds[f]];
+                    break;
+                case ENUM:
+                    enumConstants[f] = type.getEnumConstants();
+                    offset += 4;
+                    break;
+                case STRING:
+                    offset += 4;
+                    strings = true;
+                    break;
+                default:
+                    offset += PRIMITIVE_BYTES[encodings[f]];
+            }
+        }
+        this.fixedSize = offset;
+        this.variableSize = strings;
+    }
+
+    static BinaryLayout compile(ColumnLayout columns) {
+        return new BinaryLayout(columns);
+    }
+
+    private static int encodingOf(Class<?> type) {
+        if(type.isPrimitive()) {
+            return kindOf(type);
+        } else if(unwrap(type) != null) {
+            return BOXED;
+        } else if(type.isEnum()) {
+            return ENUM;
+        } else if(type == String.class) {
+            return STRING;
+        }
+        return -1;
+    }
+
+    private static Class<?> unwrap(Class<?> type) {
+        for (Class<?> primitive : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class}) {
+            if(MappingUtils.wrap(primitive) == type) {
+                return primitive;
+            }
+        }
+        return null;
+    }
+
+    boolean isCompiledFor(GettersAndSetters gs) {
+        return columns.isCompiledFor(gs);
+    }
+
+
+    public Class<?> getSourceClass() {
+        return columns.gsFrom.targetClass;
+    }
+
+    /**
+     * @return the props part of the layout, in field order
+     */
+    public List<String> getProps() {
+        return Collections.unmodifiableList(Arrays.asList(props));
+    }
+
+    /**
+     * @return the size of the fixed section, which is the size of every record when {@link #isVariableSize()} is false
+     */
+    public int getFixedSize() {
+        return fixedSize;
+    }
+
+    /**
+     * @return true if records hold Strings, hence have a variable size
+     */
+    public boolean isVariableSize() {
+        return variableSize;
+    }
+
+    /**
+     * @return the field index of prop, for the in place reads
+     * @throws IllegalArgumentException if prop isn't part of the layout
+     */
+    public int fieldOf(String prop) {
+        for (int f = 0; f < props.length; f++) {
+            if(props[f].equals(prop)) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Unknown prop: " + prop);
+    }
+
+    /**
+     * @return the size of the record the given instance would be written to
+     */
+    public int sizeOf(Object instance) {
+        int size = fixedSize;
+        if(variableSize) {
+            for (int f = 0; f < props.length; f++) {
+                if(encodings[f] == STRING) {
+                    String value = (String) getObject(instance, f);
+                    if(value != null) {
+                        size += 4 + value.getBytes(UTF_8).length;
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the size of the record starting at recordOffset
+     */
+    public int sizeAt(ByteBuffer buffer, int recordOffset) {
+        int size = fixedSize;
+        if(variableSize) {
+            for (int f = 0; f < props.length; f++) {
+                if(encodings[f] == STRING) {
+                    int dataOffset = buffer.getInt(recordOffset + offsets[f]);
+                    if(dataOffset != NULL_OFFSET) {
+                        size += 4 + buffer.getInt(recordOffset + dataOffset);
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+
+    /**
+     * Writes the instance as a record at the buffer's position, then moves the position after it.
+     * @return the size of the record
+     * @throws BufferOverflowException if the record doesn't fit, the buffer's position being left untouched
+     */
+    public int write(Object instance, ByteBuffer buffer) {
+        int start = buffer.position();
+        if(buffer.limit() - start < fixedSize) {
+            throw new BufferOverflowException();
+        }
+        int end = start + fixedSize;
+        try {
+            for (int f = 0; f < props.length; f++) {
+                int at = start + offsets[f];
+                MethodHandle getter = columns.getters[columnIndexes[f]];
+                switch (encodings[f]) {
+                    case BOOLEAN: buffer.put(at, (boolean) getter.invokeExact(instance) ? (byte) 1 : (byte) 0); break;
+                    case BYTE: buffer.put(at, (byte) getter.invokeExact(instance)); break;
+                    case SHORT: buffer.putShort(at, (short) getter.invokeExact(instance)); break;
+                    case CHAR: buffer.putChar(at, (char) getter.invokeExact(instance)); break;
+                    case INT: buffer.putInt(at, (int) getter.invokeExact(instance)); break;
+                    case LONG: buffer.putLong(at, (long) getter.invokeExact(instance)); break;
+                    case FLOAT: buffer.putFloat(at, (float) getter.invokeExact(instance)); break;
+                    case DOUBLE: buffer.putDouble(at, (double) getter.invokeExact(instance)); break;
+                    case BOXED: {
+                        Object value = (Object) getter.invokeExact(instance);
+                        buffer.put(at, value != null ? (byte) 1 : (byte) 0);
+                        if(value != null) {
+                            putBoxed(buffer, at + 1, boxedKinds[f], value);
+                        }
+                        break;
+                    }
+                    case ENUM: {
+                        Enum<?> value = (Enum<?>) (Object) getter.invokeExact(instance);
+                        buffer.putInt(at, value != null ? value.ordinal() : NULL_OFFSET);
+                        break;
+                    }
+                    default: { // STRING
+                        String value = (String) (Object) getter.invokeExact(instance);
+                        if(value == null) {
+                            buffer.putInt(at, NULL_OFFSET);
+                        } else {
+                            byte[] bytes = value.getBytes(UTF_8);
+                            if(buffer.limit() - end < 4 + bytes.length) {
+                                throw new BufferOverflowException();
+                            }
+                            buffer.putInt(at, end - start);
+                            buffer.putInt(end, bytes.length);
+                            buffer.position(end + 4);
+                            buffer.put(bytes);
+                            end += 4 + bytes.length;
+                        }
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            buffer.position(start);
+            throw e;
+        } catch (Throwable e) { // checked exception from the getter
+            buffer.position(start);
+            throw new IllegalArgumentException(e);
+        }
+        buffer.position(end);
+        return end - start;
+    }
+
+    private static void putBoxed(ByteBuffer buffer, int at, int kind, Object value) {
+        switch (kind) {
+            case BOOLEAN: buffer.put(at, (Boolean) value ? (byte) 1 : (byte) 0); break;
+            case BYTE: buffer.put(at, (Byte) value); break;
+            case SHORT: buffer.putShort(at, (Short) value); break;
+            case CHAR: buffer.putChar(at, (Character) value); break;
+            case INT: buffer.putInt(at, (Integer) value); break;
+            case LONG: buffer.putLong(at, (Long) value); break;
+            case FLOAT: buffer.putFloat(at, (Float) value); break;
+            default: buffer.putDouble(at, (Double) value);
+        }
+    }
+
+    private Object getObject(Object instance, int f) {
+        try {
+            return (Object) columns.getters[columnIndexes[f]].invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+
+    /**
+     * Calls the setters of toInstanceOrBuilder with the values of the record at recordOffset
+     * @param setters as given by {@link ColumnLayout#settersFor}
+     */
+    void read(ByteBuffer buffer, int recordOffset, Object toInstanceOrBuilder, MethodHandle[] setters) {
+        try {
+            for (int f = 0; f < props.length; f++) {
+                MethodHandle setter = setters[columnIndexes[f]];
+                if(setter != null) {
+                    int at = recordOffset + offsets[f];
+                    switch (encodings[f]) {
+                        case BOOLEAN: setter.invokeExact(toInstanceOrBuilder, buffer.get(at) != 0); break;
+                        case BYTE: setter.invokeExact(toInstanceOrBuilder, buffer.get(at)); break;
+                        case SHORT: setter.invokeExact(toInstanceOrBuilder, buffer.getShort(at)); break;
+                        case CHAR: setter.invokeExact(toInstanceOrBuilder, buffer.getChar(at)); break;
+                        case INT: setter.invokeExact(toInstanceOrBuilder, buffer.getInt(at)); break;
+                        case LONG: setter.invokeExact(toInstanceOrBuilder, buffer.getLong(at)); break;
+                        case FLOAT: setter.invokeExact(toInstanceOrBuilder, buffer.getFloat(at)); break;
+                        case DOUBLE: setter.invokeExact(toInstanceOrBuilder, buffer.getDouble(at)); break;
+                        default: setter.invokeExact(toInstanceOrBuilder, get(buffer, recordOffset, f));
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) { // checked exception from the setter
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+
+    /**
+     * Reads a single prop in place, without rehydrating the record
+     * @param field as given by {@link #fieldOf(String)}
+     * @return the (boxed) value of the field
+     */
+    public Object get(ByteBuffer buffer, int recordOffset, int field) {
+        int at = recordOffset + offsets[field];
+        switch (encodings[field]) {
+            case BOOLEAN: return buffer.get(at) != 0;
+            case BYTE: return buffer.get(at);
+            case SHORT: return buffer.getShort(at);
+            case CHAR: return buffer.getChar(at);
+            case INT: return buffer.getInt(at);
+            case LONG: return buffer.getLong(at);
+            case FLOAT: return buffer.getFloat(at);
+            case DOUBLE: return buffer.getDouble(at);
+            case BOXED:
+                return buffer.get(at) != 0 ? getBoxed(buffer, at + 1, boxedKinds[field]) : null;
+            case ENUM: {
+                int ordinal = buffer.getInt(at);
+                return ordinal != NULL_OFFSET ? enumConstants[field][ordinal] : null;
+            }
+            default: { // STRING
+                int dataOffset = buffer.getInt(at);
+                if(dataOffset == NULL_OFFSET) {
+                    return null;
+                }
+                int dataAt = recordOffset + dataOffset;
+                byte[] bytes = new byte[buffer.getInt(dataAt)];
+                ByteBuffer data = buffer.duplicate(); // not to move the buffer's position
+                data.position(dataAt + 4);
+                data.get(bytes);
+                return new String(bytes, UTF_8);
+            }
+        }
+    }
+
+    private static Object getBoxed(ByteBuffer buffer, int at, int kind) {
+        switch (kind) {
+            case BOOLEAN: return buffer.get(at) != 0;
+            case BYTE: return buffer.get(at);
+            case SHORT: return buffer.getShort(at);
+            case CHAR: return buffer.getChar(at);
+            case INT: return buffer.getInt(at);
+            case LONG: return buffer.getLong(at);
+            case FLOAT: return buffer.getFloat(at);
+            default: return buffer.getDouble(at);
+        }
+    }
+
+    public int getInt(ByteBuffer buffer, int recordOffset, int field) {
+        checkEncoding(field, INT);
+        return buffer.getInt(recordOffset + offsets[field]);
+    }
+
+    public long getLong(ByteBuffer buffer, int recordOffset, int field) {
+        checkEncoding(field, LONG);
+        return buffer.getLong(recordOffset + offsets[field]);
+    }
+
+    public double getDouble(ByteBuffer buffer, int recordOffset, int field) {
+        checkEncoding(field, DOUBLE);
+        return buffer.getDouble(recordOffset + offsets[field]);
+    }
+
+    public boolean getBoolean(ByteBuffer buffer, int recordOffset, int field) {
+        checkEncoding(field, BOOLEAN);
+        return buffer.get(recordOffset + offsets[field]) != 0;
+    }
+
+    private void checkEncoding(int field, int kind) {
+        if(encodings[field] != kind) {
+            throw new IllegalArgumentException(props[field] + " is a " + columns.types[columnIndexes[field]].getName() + " field");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryLayout{" + columns.gsFrom.targetClassName + ", fixedSize=" + fixedSize + ", variableSize=" + variableSize
+                + ", props=" + getProps() + '}';
+    }
+}
@@ -0,0 +1,57 @@
+package eu.nonstatic.mapper;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The target props a change-detecting mapping actually wrote, as a bitset of the target class' prop ids.
+ */
+public final class ChangedProps {
+
+    private final GettersAndSetters gsTo;
+    private final BitSet bits;
+
+
+    ChangedProps(GettersAndSetters gsTo, BitSet bits) {
+        this.gsTo = gsTo;
+        this.bits = bits;
+    }
+
+
+    public boolean isEmpty() {
+        return bits.isEmpty();
+    }
+
+    public int count() {
+        return bits.cardinality();
+    }
+
+    public boolean isChanged(String prop) {
+        int id = gsTo.propId(prop);
+        return id >= 0 && bits.get(id);
+    }
+
+    /**
+     * @return the changed props, in the target class' prop ids order (alphabetical)
+     */
+    public List<String> getProps() {
+        List<String> props = new ArrayList<>(bits.cardinality());
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            props.add(gsTo.propName(id));
+        }
+        return props;
+    }
+
+    /**
+     * @return a copy of the underlying bits, indexed by the target class' prop ids
+     */
+    public BitSet toBitSet() {
+        return (BitSet) bits.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "ChangedProps" + getProps();
+    }
+}
@@ -0,0 +1,49 @@
+package eu.nonstatic.mapper;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A (source class, target class) couple
+ */
+public final class ClassPair {
+
+    private final Class<?> fromClass;
+    private final Class<?> toClass;
+    private final int hash;
+
+    private ClassPair(Class<?> fromClass, Class<?> toClass) {
+        this.fromClass = requireNonNull(fromClass);
+        this.toClass = requireNonNull(toClass);
+        this.hash = 31 * fromClass.hashCode() + toClass.hashCode();
+    }
+
+    public static ClassPair of(Class<?> fromClass, Class<?> toClass) {
+        return new ClassPair(fromClass, toClass);
+    }
+
+    public Class<?> getFromClass() {
+        return fromClass;
+    }
+
+    public Class<?> getToClass() {
+        return toClass;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ClassPair that = (ClassPair) o;
+        return fromClass == that.fromClass && toClass == that.toClass;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return fromClass.getSimpleName() + " -> " + toClass.getSimpleName();
+    }
+}
@@ -0,0 +1,281 @@
+package eu.nonstatic.mapper;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Where an {@link AutoMapper} keeps its classes' {@link GettersAndSetters}.
+ * Either unbounded (the default), or bounded in size and/or idle time with a LRU eviction policy.
+ */
+abstract class ClassRegistry {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder misses = new LongAdder();
+    final LongAdder registrations = new LongAdder();
+    final LongAdder reRegistrations = new LongAdder();
+    final LongAdder registrationNanos = new LongAdder();
+    final LongAdder evictions = new LongAdder();
+
+    private RegistrationListener listener;
+    private Consumer<Class<?>> evictionHook; // internal, for the owning mapper to drop what depends on evicted classes
+
+
+    abstract GettersAndSetters get(Class<?> clazz);
+
+    abstract void put(Class<?> clazz, GettersAndSetters gs);
+
+    abstract GettersAndSetters remove(Class<?> clazz);
+
+    abstract int size();
+
+    /**
+     * @return a copy of the current registrations, which doesn't count as accesses
+     */
+    abstract Map<Class<?>, GettersAndSetters> snapshot();
+
+    /**
+     * @return true if clazz was evicted before, false otherwise
+     */
+    boolean wasEvicted(Class<?> clazz) {
+        return false;
+    }
+
+
+    void setListener(RegistrationListener listener) {
+        this.listener = listener;
+    }
+
+    void setEvictionHook(Consumer<Class<?>> evictionHook) {
+        this.evictionHook = evictionHook;
+    }
+
+    final GettersAndSetters lookup(Class<?> clazz) {
+        GettersAndSetters gs = get(clazz);
+        if(gs != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return gs;
+    }
+
+    final void registered(Class<?> clazz, GettersAndSetters gs, long nanos) {
+        boolean reRegistration = wasEvicted(clazz);
+        registrations.increment();
+        registrationNanos.add(nanos);
+        if(reRegistration) {
+            reRegistrations.increment();
+        }
+        put(clazz, gs);
+
+        RegistrationListener l = listener;
+        if(l != null) {
+            l.onRegistration(clazz, nanos, reRegistration);
+        }
+    }
+
+    final void evicted(Class<?> clazz) {
+        evictions.increment();
+        if(evictionHook != null) {
+            evictionHook.accept(clazz);
+        }
+        RegistrationListener l = listener;
+        if(l != null) {
+            l.onEviction(clazz);
+        }
+    }
+
+    final RegistryStats stats() {
+        return new RegistryStats(size(), hits.sum(), misses.sum(), registrations.sum(), reRegistrations.sum(),
+                registrationNanos.sum(), evictions.sum());
+    }
+
+    /**
+     * Moves the registrations and counters of this registry into another one
+     */
+    final <R extends ClassRegistry> R transferTo(R other) {
+        other.setListener(listener);
+        other.setEvictionHook(evictionHook);
+        other.hits.add(hits.sum());
+        other.misses.add(misses.sum());
+        other.registrations.add(registrations.sum());
+        other.reRegistrations.add(reRegistrations.sum());
+        other.registrationNanos.add(registrationNanos.sum());
+        other.evictions.add(evictions.sum());
+        snapshot().forEach(other::put);
+        return other;
+    }
+
+
+    /**
+     * Default registry, grows until classes get unregistered
+     */
+    static final class Unbounded extends ClassRegistry {
+        private final ConcurrentHashMap<Class<?>, GettersAndSetters> map = new ConcurrentHashMap<>();
+
+        @Override
+        GettersAndSetters get(Class<?> clazz) {
+            return map.get(clazz);
+        }
+
+        @Override
+        void put(Class<?> clazz, GettersAndSetters gs) {
+            map.put(clazz, gs);
+        }
+
+        @Override
+        GettersAndSetters remove(Class<?> clazz) {
+            return map.remove(clazz);
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+
+        @Override
+        Map<Class<?>, GettersAndSetters> snapshot() {
+            return new HashMap<>(map);
+        }
+    }
+
+
+    /**
+     * LRU registry, evicting the least recently used classes beyond maxSize and/or when idle for longer than maxIdle.
+     * Hot classes keep getting promoted on access, so they stay in.
+     * Evictions are notified once the lock is released, so that listeners may use the mapper and don't block lookups.
+     */
+    static final class Bounded extends ClassRegistry {
+        private final int maxSize;
+        private final long maxIdleNanos;
+        private final LinkedHashMap<Class<?>, Entry> map = new LinkedHashMap<>(16, 0.75f, true); // access order
+        private final Map<Class<?>, Boolean> evicted = new WeakHashMap<>(); // weak: not to prevent class unloading
+        private List<Class<?>> pendingEvictions; // evicted under the lock, not notified yet
+
+        /**
+         * @param maxSize max number of registered classes, 0 or less for no size limit
+         * @param maxIdle max time a class may stay registered without being accessed, null for no idle limit
+         */
+        Bounded(int maxSize, Duration maxIdle) {
+            if(maxSize <= 0 && maxIdle == null) {
+                throw new IllegalArgumentException("A bounded registry needs a max size and/or a max idle time");
+            }
+            this.maxSize = maxSize > 0 ? maxSize : Integer.MAX_VALUE;
+            this.maxIdleNanos = maxIdle != null ? maxIdle.toNanos() : Long.MAX_VALUE;
+        }
+
+        @Override
+        GettersAndSetters get(Class<?> clazz) {
+            GettersAndSetters gs = null;
+            List<Class<?>> evictedClasses;
+            synchronized (this) {
+                long now = System.nanoTime();
+                expire(now);
+                Entry entry = map.get(clazz);
+                if(entry != null) {
+                    entry.lastAccess = now;
+                    gs = entry.gs;
+                }
+                evictedClasses = drainEvictions();
+            }
+            notifyEvictions(evictedClasses);
+            return gs;
+        }
+
+        @Override
+        void put(Class<?> clazz, GettersAndSetters gs) {
+            List<Class<?>> evictedClasses;
+            synchronized (this) {
+                long now = System.nanoTime();
+                map.put(requireNonNull(clazz), new Entry(gs, now));
+                evicted.remove(clazz);
+                expire(now);
+                Iterator<Class<?>> it = map.keySet().iterator();
+                while(map.size() > maxSize && it.hasNext()) {
+                    evict(it.next(), it);
+                }
+                evictedClasses = drainEvictions();
+            }
+            notifyEvictions(evictedClasses);
+        }
+
+        @Override
+        synchronized GettersAndSetters remove(Class<?> clazz) {
+            Entry entry = map.remove(clazz);
+            return entry != null ? entry.gs : null;
+        }
+
+        @Override
+        synchronized int size() {
+            return map.size();
+        }
+
+        @Override
+        synchronized Map<Class<?>, GettersAndSetters> snapshot() {
+            Map<Class<?>, GettersAndSetters> result = new HashMap<>(map.size());
+            map.forEach((clazz, entry) -> result.put(clazz, entry.gs));
+            return result;
+        }
+
+        @Override
+        synchronized boolean wasEvicted(Class<?> clazz) {
+            return evicted.containsKey(clazz);
+        }
+
+        private void expire(long now) {
+            if(maxIdleNanos != Long.MAX_VALUE) {
+                // access order: the least recently used come first, we can stop at the first fresh entry
+                Iterator<Map.Entry<Class<?>, Entry>> it = map.entrySet().iterator();
+                while(it.hasNext()) {
+                    Map.Entry<Class<?>, Entry> mapEntry = it.next();
+                    if(now - mapEntry.getValue().lastAccess > maxIdleNanos) {
+                        evict(mapEntry.getKey(), it);
+                    } else {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void evict(Class<?> clazz, Iterator<?> it) {
+            it.remove();
+            evicted.put(clazz, Boolean.TRUE);
+            if(pendingEvictions == null) {
+                pendingEvictions = new ArrayList<>();
+            }
+            pendingEvictions.add(clazz);
+        }
+
+        /**
+         * @return the classes evicted since the last call, null if none, to be notified once the lock is released
+         */
+        private List<Class<?>> drainEvictions() {
+            List<Class<?>> evictedClasses = pendingEvictions;
+            pendingEvictions = null;
+            return evictedClasses;
+        }
+
+        private void notifyEvictions(List<Class<?>> evictedClasses) {
+            if(evictedClasses != null) {
+                for (Class<?> evictedClass : evictedClasses) {
+                    evicted(evictedClass);
+                }
+            }
+        }
+
+        private static final class Entry {
+            final GettersAndSetters gs;
+            long lastAccess;
+
+            Entry(GettersAndSetters gs, long lastAccess) {
+                this.gs = gs;
+                this.lastAccess = lastAccess;
+            }
+        }
+    }
+}
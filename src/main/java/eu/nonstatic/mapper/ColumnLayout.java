@@ -0,0 +1,249 @@
+package eu.nonstatic.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static eu.nonstatic.mapper.MappingUtils.wrap;
+
+/**
+ * One column per readable prop of a source class, primitive props getting primitive columns.
+ * Accessors are method handles adapted to their column's exact type, so that primitive values are never boxed.
+ */
+final class ColumnLayout {
+
+    static final int OBJECT = 0, BOOLEAN = 1, BYTE = 2, SHORT = 3, CHAR = 4, INT = 5, LONG = 6, FLOAT = 7, DOUBLE = 8;
+    private static final MethodHandle NOT_NULL;
+    static {
+        try {
+            NOT_NULL = MethodHandles.lookup().findStatic(ColumnLayout.class, "notNull", MethodType.methodType(Object.class, String.class, Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final GettersAndSetters gsFrom;
+    final String[] props;
+    final Class<?>[] types;
+    final int[] kinds;
+    final MethodHandle[] getters; // (Object)type for primitive columns, (Object)Object otherwise
+    private final ConcurrentHashMap<Class<?>, TargetSetters> setters = new ConcurrentHashMap<>(); // by target (or builder) class
+
+
+    private ColumnLayout(GettersAndSetters gsFrom, String[] props, Class<?>[] types, MethodHandle[] getters) {
+        this.gsFrom = gsFrom;
+        this.props = props;
+        this.types = types;
+        this.getters = getters;
+        this.kinds = new int[types.length];
+        for (int c = 0; c < types.length; c++) {
+            kinds[c] = kindOf(types[c]);
+        }
+    }
+
+    static ColumnLayout compile(GettersAndSetters gsFrom) {
+        int count = gsFrom.getterCount();
+        String[] props = new String[count];
+        Class<?>[] types = new Class<?>[count];
+        MethodHandle[] getters = new MethodHandle[count];
+        int c = 0;
+        for (int id = 0; id < gsFrom.propCount(); id++) {
+            Method getter = gsFrom.getter(id);
+            if(getter != null) {
+                props[c] = gsFrom.propName(id);
+                types[c] = getter.getReturnType();
+                getters[c] = unreflect(getter).asType(MethodType.methodType(handleType(types[c]), Object.class));
+                c++;
+            }
+        }
+        return new ColumnLayout(gsFrom, props, types, getters);
+    }
+
+    private static Class<?> handleType(Class<?> type) {
+        return type.isPrimitive() ? type : Object.class;
+    }
+
+    static int kindOf(Class<?> type) {
+        if(!type.isPrimitive()) {
+            return OBJECT;
+        } else if(type == boolean.class) {
+            return BOOLEAN;
+        } else if(type == byte.class) {
+            return BYTE;
+        } else if(type == short.class) {
+            return SHORT;
+        } else if(type == char.class) {
+            return CHAR;
+        } else if(type == int.class) {
+            return INT;
+        } else if(type == long.class) {
+            return LONG;
+        } else if(type == float.class) {
+            return FLOAT;
+        } else {
+            return DOUBLE;
+        }
+    }
+
+    static MethodHandle unreflect(Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    boolean isCompiledFor(GettersAndSetters gsFrom) {
+        return this.gsFrom == gsFrom;
+    }
+
+    int columnOf(String prop) {
+        for (int c = 0; c < props.length; c++) {
+            if(props[c].equals(prop)) { // interned, but the caller's may not be
+                return c;
+            }
+        }
+        return -1;
+    }
+
+
+    ColumnSet write(Collection<?> fromInstances) {
+        int size = fromInstances.size();
+        Object[] columns = new Object[types.length];
+        for (int c = 0; c < types.length; c++) {
+            columns[c] = Array.newInstance(types[c], size); // String[] for String props, and so on
+        }
+        int row = 0;
+        for (Object fromInstance : fromInstances) {
+            for (int c = 0; c < columns.length; c++) {
+                write(c, columns[c], row, fromInstance);
+            }
+            row++;
+        }
+        return new ColumnSet(this, columns, size);
+    }
+
+    private void write(int c, Object column, int row, Object fromInstance) {
+        MethodHandle getter = getters[c];
+        try {
+            switch (kinds[c]) {
+                case BOOLEAN: ((boolean[]) column)[row] = (boolean) getter.invokeExact(fromInstance); break;
+                case BYTE: ((byte[]) column)[row] = (byte) getter.invokeExact(fromInstance); break;
+                case SHORT: ((short[]) column)[row] = (short) getter.invokeExact(fromInstance); break;
+                case CHAR: ((char[]) column)[row] = (char) getter.invokeExact(fromInstance); break;
+                case INT: ((int[]) column)[row] = (int) getter.invokeExact(fromInstance); break;
+                case LONG: ((long[]) column)[row] = (long) getter.invokeExact(fromInstance); break;
+                case FLOAT: ((float[]) column)[row] = (float) getter.invokeExact(fromInstance); break;
+                case DOUBLE: ((double[]) column)[row] = (double) getter.invokeExact(fromInstance); break;
+                default: ((Object[]) column)[row] = (Object) getter.invokeExact(fromInstance);
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) { // checked exception from the getter
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * @return per column, the setter handle of gsTo adapted to the column's type, or null when the column can't be mapped to gsTo
+     */
+    MethodHandle[] settersFor(GettersAndSetters gsTo) {
+        TargetSetters targetSetters = setters.get(gsTo.targetClass);
+        if(targetSetters == null || targetSetters.gsTo != gsTo) { // unknown, or compiled against a former registration
+            targetSetters = new TargetSetters(gsTo, compileSetters(gsTo));
+            setters.put(gsTo.targetClass, targetSetters);
+        }
+        return targetSetters.handles;
+    }
+
+    private MethodHandle[] compileSetters(GettersAndSetters gsTo) {
+        MethodHandle[] handles = new MethodHandle[types.length];
+        for (int c = 0; c < types.length; c++) {
+            int toId = gsTo.propId(props[c]);
+            Method setter = toId >= 0 ? gsTo.setter(toId) : null;
+            if(setter != null) {
+                handles[c] = adaptSetter(setter, types[c], gsFrom.targetClassName, gsTo.targetClassName, props[c]);
+            }
+        }
+        return handles;
+    }
+
+    /**
+     * Forgets the setters of toClass, eg: once unregistered or evicted
+     */
+    void dropSetters(Class<?> toClass) {
+        setters.remove(toClass);
+    }
+
+    /**
+     * @return the setter as a (Object, column type)void handle, dropping fluent setters' return, or null if the column's values
+     * can't be passed to it: primitive widening and boxing are fine, reference downcasts aren't, like for mapping plans.
+     * Wrapper columns' null values are rejected with an IllegalArgumentException by primitive setters, like by mapping plans.
+     */
+    private static MethodHandle adaptSetter(Method setter, Class<?> columnType, String fromClassName, String toClassName, String prop) {
+        Class<?> setterType = setter.getParameterTypes()[0];
+        if(!columnType.isPrimitive() && !wrap(setterType).isAssignableFrom(columnType)) {
+            return null;
+        }
+        MethodHandle handle;
+        try {
+            handle = unreflect(setter).asType(MethodType.methodType(void.class, Object.class, handleType(columnType)));
+        } catch (WrongMethodTypeException e) { // eg: long column into an int setter
+            return null;
+        }
+        if(!columnType.isPrimitive() && setterType.isPrimitive()) { // unboxed by the handle
+            String message = "Can't unbox null value of " + fromClassName + '.' + prop + " to " + toClassName + '.' + prop;
+            handle = MethodHandles.filterArguments(handle, 1, NOT_NULL.bindTo(message));
+        }
+        return handle;
+    }
+
+    private static Object notNull(String message, Object value) {
+        if(value == null) {
+            throw new IllegalArgumentException(message);
+        }
+        return value;
+    }
+
+    void read(ColumnSet columnSet, int row, Object toInstanceOrBuilder, MethodHandle[] setters) {
+        Object[] columns = columnSet.columns;
+        try {
+            for (int c = 0; c < columns.length; c++) {
+                MethodHandle setter = setters[c];
+                if(setter != null) {
+                    Object column = columns[c];
+                    switch (kinds[c]) {
+                        case BOOLEAN: setter.invokeExact(toInstanceOrBuilder, ((boolean[]) column)[row]); break;
+                        case BYTE: setter.invokeExact(toInstanceOrBuilder, ((byte[]) column)[row]); break;
+                        case SHORT: setter.invokeExact(toInstanceOrBuilder, ((short[]) column)[row]); break;
+                        case CHAR: setter.invokeExact(toInstanceOrBuilder, ((char[]) column)[row]); break;
+                        case INT: setter.invokeExact(toInstanceOrBuilder, ((int[]) column)[row]); break;
+                        case LONG: setter.invokeExact(toInstanceOrBuilder, ((long[]) column)[row]); break;
+                        case FLOAT: setter.invokeExact(toInstanceOrBuilder, ((float[]) column)[row]); break;
+                        case DOUBLE: setter.invokeExact(toInstanceOrBuilder, ((double[]) column)[row]); break;
+                        default: setter.invokeExact(toInstanceOrBuilder, ((Object[]) column)[row]);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) { // checked exception from the setter
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static final class TargetSetters {
+        final GettersAndSetters gsTo;
+        final MethodHandle[] handles;
+
+        TargetSetters(GettersAndSetters gsTo, MethodHandle[] handles) {
+            this.gsTo = gsTo;
+            this.handles = handles;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package eu.nonstatic.mapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Struct of arrays: the readable props of a batch of instances of the same class, one array per prop.
+ * Primitive props get primitive arrays (int[] for int props...), others get arrays of their declared type (String[]...).
+ * Arrays are handed out as is, not copied.
+ */
+public final class ColumnSet {
+
+    final ColumnLayout layout;
+    final Object[] columns;
+    private final int size;
+
+
+    ColumnSet(ColumnLayout layout, Object[] columns, int size) {
+        this.layout = layout;
+        this.columns = columns;
+        this.size = size;
+    }
+
+
+    public Class<?> getSourceClass() {
+        return layout.gsFrom.targetClass;
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int size() {
+        return size;
+    }
+
+    public List<String> getProps() {
+        return Collections.unmodifiableList(Arrays.asList(layout.props));
+    }
+
+    /**
+     * @return the declared type of prop, which is also its column's component type
+     */
+    public Class<?> getType(String prop) {
+        return layout.types[column(prop)];
+    }
+
+    /**
+     * @return the column of prop, to be cast to the array type of {@link #getType(String)}
+     */
+    public Object getColumn(String prop) {
+        return columns[column(prop)];
+    }
+
+    public boolean[] getBooleans(String prop) {
+        return (boolean[]) column(prop, boolean.class);
+    }
+
+    public byte[] getBytes(String prop) {
+        return (byte[]) column(prop, byte.class);
+    }
+
+    public short[] getShorts(String prop) {
+        return (short[]) column(prop, short.class);
+    }
+
+    public char[] getChars(String prop) {
+        return (char[]) column(prop, char.class);
+    }
+
+    public int[] getInts(String prop) {
+        return (int[]) column(prop, int.class);
+    }
+
+    public long[] getLongs(String prop) {
+        return (long[]) column(prop, long.class);
+    }
+
+    public float[] getFloats(String prop) {
+        return (float[]) column(prop, float.class);
+    }
+
+    public double[] getDoubles(String prop) {
+        return (double[]) column(prop, double.class);
+    }
+
+    /**
+     * @return the column of a non primitive prop, eg: a String[] for a String prop
+     */
+    public Object[] getObjects(String prop) {
+        int c = column(prop);
+        if(layout.types[c].isPrimitive()) {
+            throw new IllegalArgumentException(prop + " is a " + layout.types[c] + " column");
+        }
+        return (Object[]) columns[c];
+    }
+
+    private Object column(String prop, Class<?> type) {
+        int c = column(prop);
+        if(layout.types[c] != type) {
+            throw new IllegalArgumentException(prop + " is a " + layout.types[c].getName() + " column, not a " + type + " one");
+        }
+        return columns[c];
+    }
+
+    private int column(String prop) {
+        int c = layout.columnOf(prop);
+        if(c < 0) {
+            throw new IllegalArgumentException("Unknown prop: " + prop);
+        }
+        return c;
+    }
+
+    @Override
+    public String toString() {
+        return "ColumnSet{" + layout.gsFrom.targetClassName + " x " + size + ", props=" + getProps() + '}';
+    }
+}
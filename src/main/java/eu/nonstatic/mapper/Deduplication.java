@@ -0,0 +1,65 @@
+package eu.nonstatic.mapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Which source props have their values deduplicated when batch mapping, see {@link AutoMapper#mapAll(java.util.Collection, Class, Deduplication)}:
+ * equal values (eg: country codes, status labels) are then shared by the targets instead of being retained once per target.
+ * Only meant for immutable values such as Strings. Each prop gets its own bounded interning table, kept along with this instance:
+ * reusing it across batches keeps sharing values across batches.
+ */
+public final class Deduplication {
+
+    public static final int DEFAULT_TABLE_SIZE = 1024;
+
+    private final List<String> props;
+    final Map<String, InternTable> tables;
+
+
+    private Deduplication(int tableSize, String... props) {
+        if(props.length == 0) {
+            throw new IllegalArgumentException("Deduplication needs at least one prop");
+        }
+        this.props = Collections.unmodifiableList(Arrays.asList(props.clone()));
+        this.tables = new HashMap<>(props.length * 2);
+        for (String prop : props) {
+            tables.put(prop, new InternTable(tableSize));
+        }
+    }
+
+    public static Deduplication of(String... props) {
+        return new Deduplication(DEFAULT_TABLE_SIZE, props);
+    }
+
+    /**
+     * @param tableSize values kept per prop, the larger the less equal values escape sharing through hash collisions
+     */
+    public static Deduplication of(int tableSize, String... props) {
+        return new Deduplication(tableSize, props);
+    }
+
+
+    public List<String> getProps() {
+        return props;
+    }
+
+    /**
+     * @return how many times a value was replaced with an equal one already held, ie: the copies which can now be collected
+     */
+    public long getSharedCount(String prop) {
+        InternTable table = tables.get(prop);
+        if(table == null) {
+            throw new IllegalArgumentException("Unknown prop: " + prop);
+        }
+        return table.sharedCount();
+    }
+
+    @Override
+    public String toString() {
+        return "Deduplication" + props;
+    }
+}
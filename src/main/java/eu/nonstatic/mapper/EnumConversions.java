@@ -0,0 +1,126 @@
+package eu.nonstatic.mapper;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enum to enum (by name, unless overridden), enum to String and String to enum conversions, by (source type, target type).
+ * Their tables are computed once, when the first plan needing them is compiled, so that mapping a value is an array lookup.
+ */
+final class EnumConversions {
+
+    private final PlanCache<Conversion> conversions = new PlanCache<>();
+
+
+    /**
+     * @return null when values of fromType are written as is, or can't be converted to toType
+     */
+    Conversion get(Class<?> fromType, Class<?> toType) {
+        if(toType.isAssignableFrom(fromType) || !isConvertible(fromType, toType)) {
+            return null;
+        }
+        Conversion conversion = conversions.get(fromType, toType);
+        if(conversion == null) {
+            conversion = create(fromType, toType);
+        }
+        return conversion;
+    }
+
+    private static boolean isConvertible(Class<?> fromType, Class<?> toType) {
+        return fromType.isEnum() && (toType.isEnum() || toType == String.class)
+            || fromType == String.class && toType.isEnum();
+    }
+
+    private synchronized Conversion create(Class<?> fromType, Class<?> toType) {
+        Conversion conversion = conversions.get(fromType, toType);
+        if(conversion == null) {
+            conversion = new Conversion(fromType, toType);
+            conversions.put(fromType, toType, conversion);
+        }
+        return conversion;
+    }
+
+    /**
+     * Maps fromConstant to toConstant whatever their names, plans already compiled included
+     * @throws IllegalArgumentException if both constants are of the same type, those being written as is
+     */
+    void override(Enum<?> fromConstant, Enum<?> toConstant) {
+        Conversion conversion = get(fromConstant.getDeclaringClass(), toConstant.getDeclaringClass());
+        if(conversion == null) {
+            throw new IllegalArgumentException(fromConstant + " and " + toConstant + " are both " + toConstant.getDeclaringClass().getName());
+        }
+        conversion.override(fromConstant, toConstant);
+    }
+
+    /**
+     * @return a copy which later overrides don't affect, eg: for plans being frozen
+     */
+    EnumConversions snapshot() {
+        EnumConversions snapshot = new EnumConversions();
+        conversions.forEach(conversion -> snapshot.conversions.put(conversion.fromType, conversion.toType, new Conversion(conversion)));
+        return snapshot;
+    }
+
+
+    static final class Conversion {
+        private final Class<?> fromType;
+        private final Class<?> toType;
+        private volatile Object[] byOrdinal; // enum sources, null entries for constants having no counterpart
+        private final Map<String, Object> byName; // String sources
+
+        Conversion(Class<?> fromType, Class<?> toType) {
+            this.fromType = fromType;
+            this.toType = toType;
+            if(fromType.isEnum()) {
+                Object[] fromConstants = fromType.getEnumConstants();
+                byOrdinal = new Object[fromConstants.length];
+                Map<String, Object> toConstants = toType.isEnum() ? constantsByName(toType) : null;
+                for (int ordinal = 0; ordinal < fromConstants.length; ordinal++) {
+                    String name = ((Enum<?>) fromConstants[ordinal]).name();
+                    byOrdinal[ordinal] = toConstants != null ? toConstants.get(name) : name;
+                }
+                byName = null;
+            } else {
+                byName = constantsByName(toType);
+            }
+        }
+
+        /**
+         * Tables are never modified in place, sharing them is enough
+         */
+        private Conversion(Conversion conversion) {
+            this.fromType = conversion.fromType;
+            this.toType = conversion.toType;
+            this.byOrdinal = conversion.byOrdinal;
+            this.byName = conversion.byName;
+        }
+
+        private static Map<String, Object> constantsByName(Class<?> enumType) {
+            Object[] constants = enumType.getEnumConstants();
+            Map<String, Object> byName = new HashMap<>(constants.length * 2);
+            for (Object constant : constants) {
+                byName.put(((Enum<?>) constant).name(), constant);
+            }
+            return byName;
+        }
+
+        private synchronized void override(Enum<?> fromConstant, Enum<?> toConstant) {
+            Object[] overridden = byOrdinal.clone(); // copy on write, mappings in flight keep reading the former table
+            overridden[fromConstant.ordinal()] = toConstant;
+            byOrdinal = overridden;
+        }
+
+        /**
+         * @return the converted value, null for null or when value has no counterpart in the target type
+         */
+        Object convert(Object value) {
+            if(value == null) {
+                return null;
+            } else if(byName != null) {
+                return byName.get(value);
+            } else {
+                return byOrdinal[((Enum<?>) value).ordinal()];
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package eu.nonstatic.mapper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimation of the heap retained by the class metadata of a mapper.
+ * Figures are computed assuming a 64 bits JVM with compressed oops, they're meant for comparison, not accounting.
+ */
+public final class FootprintReport {
+
+    static final int OBJECT_HEADER_BYTES = 12;
+    static final int ARRAY_HEADER_BYTES = 16;
+    static final int REFERENCE_BYTES = 4;
+    static final int GETTERS_AND_SETTERS_SHALLOW_BYTES = align(OBJECT_HEADER_BYTES + 6 * REFERENCE_BYTES + 2 * 4 + 1);
+    static final int BUILDER_CONTEXT_SHALLOW_BYTES = align(OBJECT_HEADER_BYTES + 3 * REFERENCE_BYTES);
+    static final int METHOD_BYTES = 88; // shallow java.lang.reflect.Method copy, as returned by Class#getMethods()
+
+    private final Map<Class<?>, Long> bytesPerClass;
+    private final long totalBytes;
+
+    FootprintReport(Map<Class<?>, GettersAndSetters> registrations) {
+        Map<Class<?>, Long> bytes = new LinkedHashMap<>();
+        long total = 0;
+        for (Map.Entry<Class<?>, GettersAndSetters> entry : registrations.entrySet()) {
+            long classBytes = entry.getValue().estimatedBytes();
+            bytes.put(entry.getKey(), classBytes);
+            total += classBytes;
+        }
+        this.bytesPerClass = Collections.unmodifiableMap(bytes);
+        this.totalBytes = total;
+    }
+
+    static int align(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    static long arrayBytes(int length) {
+        return align(ARRAY_HEADER_BYTES + length * REFERENCE_BYTES);
+    }
+
+
+    public int getRegisteredClasses() {
+        return bytesPerClass.size();
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getAverageBytesPerClass() {
+        return bytesPerClass.isEmpty() ? 0 : totalBytes / bytesPerClass.size();
+    }
+
+    /**
+     * @param clazz
+     * @return the estimated bytes for clazz, or -1 if it is not registered
+     */
+    public long getBytes(Class<?> clazz) {
+        return bytesPerClass.getOrDefault(clazz, -1L);
+    }
+
+    public Map<Class<?>, Long> getBytesPerClass() {
+        return bytesPerClass;
+    }
+
+    @Override
+    public String toString() {
+        return "FootprintReport{classes=" + getRegisteredClasses() + ", totalBytes=" + totalBytes
+                + ", averageBytesPerClass=" + getAverageBytesPerClass() + '}';
+    }
+}
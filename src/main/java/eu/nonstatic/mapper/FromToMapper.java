@@ -2,58 +2,115 @@ package eu.nonstatic.mapper;
 
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
-import static eu.nonstatic.mapper.MappingUtils.mapProperty;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
+import static java.util.Collections.unmodifiableMap;
 
 /**
  * Mapper with specific source class.prop => target class.prop descriptions
  */
 public class FromToMapper {
 
-    private HashMap<Class, FromMappers> mappings = new HashMap<>(); // Class is fromClass
+    // Immutable snapshot, swapped as a whole on (un)registration so that readers never see a table being modified
+    private volatile MappingTable table = MappingTable.EMPTY;
     private AutoMapper mapper = new AutoMapper();
+    private final PlanCache<MappingPlan> plans = new PlanCache<>();
+    private final ResultCaches resultCaches = new ResultCaches();
 
-    private FromMappers getMappers(Class<?> fromClass) {
-        return mappings.computeIfAbsent(fromClass, c -> new FromMappers());
+    /**
+     * @return the mappings registered for that very pair, see {@link #resolveMappers(Class, Class)} for mapping
+     */
+    private ToMappers getMappers(Class<?> fromClass, Class<?> toClass) {
+        return table.get(fromClass).get(toClass);
+    }
+
+    /**
+     * @return the mappings applying to runtime classes, ie: those registered for them or any of their supertypes
+     */
+    private ToMappers resolveMappers(Class<?> fromClass, Class<?> toClass) {
+        return table.resolve(fromClass, toClass);
+    }
+
+    /**
+     * @param metrics {@link MapperMetrics#NONE} or null to disable
+     * @return this
+     */
+    public FromToMapper setMetrics(MapperMetrics metrics) {
+        mapper.setMetrics(metrics);
+        plans.clear();
+        return this;
+    }
+
+    public MapperMetrics getMetrics() {
+        return mapper.getMetrics();
+    }
+
+    /**
+     * @param propertyProfiler null to disable
+     * @return this
+     */
+    public FromToMapper setPropertyProfiler(PropertyProfiler propertyProfiler) {
+        mapper.setPropertyProfiler(propertyProfiler);
+        plans.clear();
+        return this;
+    }
+
+    public PropertyProfiler getPropertyProfiler() {
+        return mapper.getPropertyProfiler();
     }
 
     public Collection<MappingDescriptor> getMapping(Class<?> fromClass, Class<?> toClass) {
-        return mappings.get(fromClass).get(toClass).values();
+        return getMappers(fromClass, toClass).values();
+    }
+
+    /**
+     * @return the version of the mapping table, incremented on each effective (un)registration
+     */
+    public long getMappingVersion() {
+        return table.version;
     }
 
 
-    public MappingDescriptor registerMapping(Class<?> fromClass, String fromProp, Class<?> toClass, String toProp) {
+    public synchronized MappingDescriptor registerMapping(Class<?> fromClass, String fromProp, Class<?> toClass, String toProp) {
         GettersAndSetters gsFrom = mapper.getRegistrationForced(fromClass), gsTo = mapper.getRegistrationForced(toClass);
         Method getter = gsFrom.getter(fromProp), setter = gsTo.setter(toProp);
 
-        return getMappers(fromClass).get(toClass)
-                .registerMapping(fromProp, new MappingDescriptor(gsFrom.targetClassName, fromProp, getter, gsTo.targetClassName, toProp, setter));
+        ToMappers toMappers = getMappers(fromClass, toClass);
+        MappingDescriptor previous = toMappers.get(fromProp);
+        MappingDescriptor descriptor = new MappingDescriptor(gsFrom.targetClassName, fromProp, getter, gsTo.targetClassName, toProp, setter);
+        swap(fromClass, toClass, toMappers.with(fromProp, descriptor, table.version + 1));
+        return previous;
     }
 
-    public void unregisterMapping(Class<?> fromClass, String fromProp, Class<?> toClass) {
-        Iterator<MappingDescriptor> it = mappings.get(fromClass).get(toClass).iterator();
-        while(it.hasNext()) {
-            MappingDescriptor descriptor = it.next();
-            if(fromProp.equals(descriptor.fromPropName)) {
-                it.remove();
-                // no break, there might be fromProp -> * toProp
-            }
+    public synchronized void unregisterMapping(Class<?> fromClass, String fromProp, Class<?> toClass) {
+        ToMappers toMappers = getMappers(fromClass, toClass);
+        ToMappers newToMappers = toMappers.without(descriptor -> fromProp.equals(descriptor.fromPropName), table.version + 1); // there might be fromProp -> * toProp
+        if(newToMappers != toMappers) {
+            swap(fromClass, toClass, newToMappers);
         }
     }
 
-    public void unregisterMapping(Class<?> fromClass, String fromProp, Class<?> toClass, String toProp) {
-        Iterator<MappingDescriptor> it = mappings.get(fromClass).get(toClass).iterator();
-        while(it.hasNext()) {
-            MappingDescriptor descriptor = it.next();
-            if(fromProp.equals(descriptor.fromPropName) && toProp.equals(descriptor.toPropName)) {
-                it.remove();
-                break;
-            }
+    public synchronized void unregisterMapping(Class<?> fromClass, String fromProp, Class<?> toClass, String toProp) {
+        ToMappers toMappers = getMappers(fromClass, toClass);
+        ToMappers newToMappers = toMappers.without(descriptor -> fromProp.equals(descriptor.fromPropName) && toProp.equals(descriptor.toPropName), table.version + 1);
+        if(newToMappers != toMappers) {
+            swap(fromClass, toClass, newToMappers);
         }
     }
 
+    private void swap(Class<?> fromClass, Class<?> toClass, ToMappers toMappers) {
+        MappingTable current = table;
+        this.table = current.with(fromClass, current.get(fromClass).with(toClass, toMappers), current.version + 1);
+        resultCaches.invalidateAll(); // results of the former mappings, those of subclasses' pairs included
+    }
+
 
     public <F, T> T map(F fromInstance, T toInstance) {
         return map(fromInstance, toInstance, emptySet());
@@ -64,14 +121,44 @@ public class FromToMapper {
     }
 
     public <F, T> T map(F fromInstance, T toInstance, Collection<String> excludedProps) {
-        ToMappers toMappers = getMappers(fromInstance.getClass()).get(toInstance.getClass());
-        Collection<String> excludedPropsMerged = mergeExcludes(toMappers, excludedProps);
-        return mapper.map(fromInstance, toInstance, excludedPropsMerged, ti -> mapInternal(fromInstance, ti, toMappers));
+        GettersAndSetters gsFrom = mapper.getRegistration(fromInstance.getClass()), gsTo = mapper.getRegistration(toInstance.getClass());
+        ToMappers toMappers = resolveMappers(fromInstance.getClass(), toInstance.getClass());
+        return mapInternal(fromInstance, gsFrom, toInstance, gsTo, toMappers, excludedProps);
+    }
+
+
+
+    /**
+     * Only maps the projected props, explicit mappings included, only their getters are called
+     */
+    public <F, T> T map(F fromInstance, T toInstance, Projection projection) {
+        GettersAndSetters gsFrom = mapper.getRegistration(fromInstance.getClass()), gsTo = mapper.getRegistration(toInstance.getClass());
+        ToMappers toMappers = resolveMappers(fromInstance.getClass(), toInstance.getClass());
+        return mapProjected(fromInstance, gsFrom, toInstance, gsTo, toMappers, projection);
+    }
+
+
+
+    public <F, T> ChangedProps mapChanged(F fromInstance, T toInstance) {
+        return mapChanged(fromInstance, toInstance, false);
+    }
+
+    /**
+     * Change-detecting merge, explicit mappings included, see {@link AutoMapper#mapChanged(Object, Object, boolean)}
+     */
+    public <F, T> ChangedProps mapChanged(F fromInstance, T toInstance, boolean skipNulls) {
+        GettersAndSetters gsFrom = mapper.getRegistration(fromInstance.getClass()), gsTo = mapper.getRegistration(toInstance.getClass());
+        ToMappers toMappers = resolveMappers(fromInstance.getClass(), toInstance.getClass());
+        return getPlan(gsFrom, gsTo, toMappers).applyChanged(fromInstance, toInstance, skipNulls);
     }
 
 
 
     public <F, T> T mapToInstance(F fromInstance, Class<T> toClass) {
+        ResultCaches.PairCache cache = resultCaches.get(fromInstance.getClass(), toClass);
+        if(cache != null) {
+            return cache.get(fromInstance, () -> mapToInstance(fromInstance, toClass, emptySet()));
+        }
         return mapToInstance(fromInstance, toClass, emptySet());
     }
 
@@ -80,9 +167,11 @@ public class FromToMapper {
     }
 
     public <F, T> T mapToInstance(F fromInstance, Class<T> toClass, Collection<String> excludedProps) {
-        ToMappers toMappers = getMappers(fromInstance.getClass()).get(toClass);
-        Collection<String> excludedPropsMerged = mergeExcludes(toMappers, excludedProps);
-        return mapper.mapToInstance(fromInstance, toClass, excludedPropsMerged, toInstance -> mapInternal(fromInstance, toInstance, toMappers));
+        return map(fromInstance, AutoMapper.newInstance(toClass), excludedProps);
+    }
+
+    public <F, T> T mapToInstance(F fromInstance, Class<T> toClass, Projection projection) {
+        return map(fromInstance, AutoMapper.newInstance(toClass), projection);
     }
 
 
@@ -101,49 +190,334 @@ public class FromToMapper {
         AutoMapper.BuilderWrapper<B> builderWrapper = mapper.getContextualizedBuilder(toClass);
         GettersAndSetters gsTo = builderWrapper.gettersAndSetters;
 
-        ToMappers toMappers = getMappers(fromInstance.getClass()).get(toClass) // the issue here is those mappers apply to toClass, not its builder
-                .migrate(gsTo); // so we're recomputing dynamically on the builder class to prevent running after mapping sync between a class and its builder
-        Collection<String> excludedPropsMerged = mergeExcludes(toMappers, excludedProps);
+        ToMappers toMappers = resolveMappers(fromInstance.getClass(), toClass); // those mappers apply to toClass, the plan resolves them on its builder
+        return mapInternal(fromInstance, gsFrom, builderWrapper.builder, gsTo, toMappers, excludedProps);
+    }
+
+    /**
+     * See {@link AutoMapper#mapAllAsync(Collection, Class, int)}, explicit mappings included
+     */
+    public <F, T> CompletableFuture<List<T>> mapAllAsync(Collection<? extends F> fromInstances, Class<T> toClass, int maxConcurrency) {
+        return mapAllAsync(fromInstances, toClass, maxConcurrency, AsyncBatch.DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * See {@link AutoMapper#mapAllAsync(Collection, Class, int, Executor)}, explicit mappings included
+     */
+    public <F, T> CompletableFuture<List<T>> mapAllAsync(Collection<? extends F> fromInstances, Class<T> toClass, int maxConcurrency, Executor executor) {
+        return AsyncBatch.start(fromInstances, (F fromInstance) -> fromInstance != null ? mapToInstance(fromInstance, toClass) : null, maxConcurrency, executor);
+    }
+
+    /**
+     * See {@link AutoMapper#freeze()}, explicit mappings included as they currently are
+     */
+    public FrozenMapper freeze() {
+        return freeze(mapper.compiledPairs(plans));
+    }
+
+    /**
+     * See {@link AutoMapper#freeze(Collection)}, explicit mappings included as they currently are
+     */
+    public FrozenMapper freeze(Collection<ClassPair> pairs) {
+        EnumConversions frozenConversions = mapper.enumConversions.snapshot();
+        return new FrozenMapper(pairs, mapper, (gsFrom, gsTo, toClass) ->
+                MappingPlan.compile(gsFrom, gsTo, resolveMappers(gsFrom.targetClass, toClass), frozenConversions, null, null));
+    }
+
+    /**
+     * See {@link AutoMapper#mapAll(Collection, Class)}, explicit mappings included
+     */
+    public <F, T> List<T> mapAll(Collection<? extends F> fromInstances, Class<T> toClass) {
+        return mapAll(fromInstances, toClass, null);
+    }
+
+    /**
+     * See {@link AutoMapper#mapAll(Collection, Class, Deduplication)}, explicit mappings included
+     * @param deduplication null for none
+     */
+    public <F, T> List<T> mapAll(Collection<? extends F> fromInstances, Class<T> toClass, Deduplication deduplication) {
+        GettersAndSetters gsTo = mapper.getRegistration(toClass);
+        List<T> toInstances = new ArrayList<>(fromInstances.size());
+        Class<?> planFromClass = null;
+        MappingPlan plan = null;
+        for (F fromInstance : fromInstances) {
+            if(fromInstance == null) {
+                toInstances.add(null);
+                continue;
+            }
+            if(fromInstance.getClass() != planFromClass) {
+                planFromClass = fromInstance.getClass();
+                plan = getPlan(mapper.getRegistration(planFromClass), gsTo, resolveMappers(planFromClass, toClass));
+                if(deduplication != null) {
+                    plan = plan.deduplicate(deduplication, mapper.metricsOrNull(), mapper.getPropertyProfiler());
+                }
+            }
+            T toInstance = AutoMapper.newInstance(toClass);
+            plan.apply(fromInstance, toInstance, null);
+            toInstances.add(toInstance);
+        }
+        return toInstances;
+    }
+
+    /**
+     * Maps to toClass' builder, explicit mappings included, then builds it. See {@link AutoMapper#mapToBuilt(Object, Class)}
+     */
+    public <F, T> T mapToBuilt(F fromInstance, Class<T> toClass) {
+        ResultCaches.PairCache cache = resultCaches.get(fromInstance.getClass(), toClass);
+        if(cache != null) {
+            return cache.get(fromInstance, () -> mapper.build(mapToBuilder(fromInstance, toClass), toClass));
+        }
+        return mapper.build(mapToBuilder(fromInstance, toClass), toClass);
+    }
+
+    /**
+     * See {@link AutoMapper#declareImmutable(Class[])}
+     */
+    public FromToMapper declareImmutable(Class<?>... classes) {
+        for (Class<?> clazz : classes) {
+            resultCaches.declareImmutable(clazz);
+        }
+        return this;
+    }
+
+    /**
+     * See {@link AutoMapper#cacheResults(Class, Class, ResultCacheOptions)}. Cached results are dropped when the pair's mappings change.
+     */
+    public FromToMapper cacheResults(Class<?> fromClass, Class<?> toClass, ResultCacheOptions options) {
+        resultCaches.enable(fromClass, toClass, options);
+        return this;
+    }
+
+    public FromToMapper uncacheResults(Class<?> fromClass, Class<?> toClass) {
+        resultCaches.disable(fromClass, toClass);
+        return this;
+    }
 
-        return mapper.mapInternal(fromInstance, gsFrom, builderWrapper.builder, gsTo, excludedPropsMerged,
-                toBuilder -> mapInternal(fromInstance, toBuilder, toMappers));
+    public ResultCacheStats getResultCacheStats(Class<?> fromClass, Class<?> toClass) {
+        return resultCaches.stats(fromClass, toClass);
+    }
+
+    public <B> B mapToBuilder(Object fromInstance, Class<?> toClass, Projection projection) {
+        GettersAndSetters gsFrom = mapper.getRegistrationForced(fromInstance.getClass());
+        AutoMapper.BuilderWrapper<B> builderWrapper = mapper.getContextualizedBuilder(toClass);
+        ToMappers toMappers = resolveMappers(fromInstance.getClass(), toClass);
+        return mapProjected(fromInstance, gsFrom, builderWrapper.builder, builderWrapper.gettersAndSetters, toMappers, projection);
     }
 
 
     // =================================================================================================================
 
-    private static Collection<String> mergeExcludes(ToMappers toMappers, Collection<String> excludedProps) {
-        Set<String> excludedPropsSpecific = toMappers.keySet();
-        if(excludedProps != null && !excludedProps.isEmpty()) {
-            // I prefer a List to a HashSet, less lookup-consuming and it doesnt matter if there are dupes.
-            List<String> excludedPropsMerged = new ArrayList<>(excludedPropsSpecific.size() + excludedProps.size());
-            excludedPropsMerged.addAll(excludedPropsSpecific);
-            excludedPropsMerged.addAll(excludedProps);
-            return excludedPropsMerged;
-        } else {
-            return excludedPropsSpecific;
+    /**
+     * Auto and explicit mappings in one go, following the plan compiled for this (source, target or builder, explicit mappings)
+     */
+    private <F, T> T mapInternal(F fromInstance, GettersAndSetters gsFrom, T toInstanceOrBuilder, GettersAndSetters gsTo,
+                                 ToMappers toMappers, Collection<String> excludedProps) {
+        if(fromInstance != null && toInstanceOrBuilder != null) {
+            gsFrom.checkGettersContain(excludedProps);
+            getPlan(gsFrom, gsTo, toMappers).apply(fromInstance, toInstanceOrBuilder, excludedProps);
         }
+        return toInstanceOrBuilder;
     }
 
-    private static <F, T> T mapInternal(F fromInstance, T toInstanceOrBuilder, ToMappers toMappers) {
-        for (MappingDescriptor descriptor : toMappers) {
-            mapProperty(fromInstance, descriptor.fromClassName, descriptor.fromGetter, descriptor.fromPropName,
-                    toInstanceOrBuilder, descriptor.toClassName, descriptor.toSetter, descriptor.toPropName);
+    private <F, T> T mapProjected(F fromInstance, GettersAndSetters gsFrom, T toInstanceOrBuilder, GettersAndSetters gsTo,
+                                  ToMappers toMappers, Projection projection) {
+        if(fromInstance != null && toInstanceOrBuilder != null) {
+            getPlan(gsFrom, gsTo, toMappers).project(projection, mapper.metricsOrNull(), mapper.getPropertyProfiler())
+                    .apply(fromInstance, toInstanceOrBuilder, null);
         }
         return toInstanceOrBuilder;
     }
 
+    /**
+     * Plans are cached per (source class, target or builder class). A change in a pair's explicit mappings
+     * gives it a new ToMappers instance, which invalidates the plans of that pair only.
+     */
+    private MappingPlan getPlan(GettersAndSetters gsFrom, GettersAndSetters gsTo, ToMappers toMappers) {
+        MappingPlan plan = plans.get(gsFrom.targetClass, gsTo.targetClass);
+        if(plan == null || !plan.isCompiledFor(gsFrom, gsTo, toMappers)) {
+            plan = MappingPlan.compile(gsFrom, gsTo, toMappers, mapper.enumConversions, mapper.metricsOrNull(), mapper.getPropertyProfiler());
+            plans.put(gsFrom.targetClass, gsTo.targetClass, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Describes, without mapping anything, what mapping fromClass to toClass does, explicit mappings included
+     */
+    public PlanExplanation explain(Class<?> fromClass, Class<?> toClass, String... excludedProps) {
+        GettersAndSetters gsFrom = mapper.getRegistrationForced(fromClass), gsTo = mapper.getRegistrationForced(toClass);
+        return getPlan(gsFrom, gsTo, resolveMappers(fromClass, toClass)).explain(asList(excludedProps));
+    }
+
+    /**
+     * Same as {@link #explain(Class, Class, String...)}, targeting toClass' builder
+     */
+    public PlanExplanation explainToBuilder(Class<?> fromClass, Class<?> toClass, String... excludedProps) {
+        GettersAndSetters gsFrom = mapper.getRegistrationForced(fromClass), gsTo = mapper.getBuilderContext(toClass).gettersAndSetters;
+        return getPlan(gsFrom, gsTo, resolveMappers(fromClass, toClass)).explain(asList(excludedProps));
+    }
+
 
     // =================================================================================================================
 
+    /**
+     * Immutable snapshot of every defined mapping (source classes => target classes => target props)
+     */
+    static final class MappingTable {
+        static final MappingTable EMPTY = new MappingTable(emptyMap(), 0);
+        static final int MAX_RESOLVED_PAIRS = 4096; // beyond that, resolutions are flushed rather than pinning ever more classes
+
+        final Map<Class<?>, FromMappers> map; // Class is fromClass
+        final long version;
+        private final boolean interfaceSources; // false when only classes have mappings, so that walking superclasses is enough
+        // resolutions by runtime pair, going away along with this snapshot; pairs without mappings get ToMappers.EMPTY
+        private final PlanCache<ToMappers> resolved = new PlanCache<>();
+        private final AtomicInteger resolvedCount = new AtomicInteger();
+        // merges by the mappings they were merged from, nearest first: bounded by this snapshot's mappings rather than by
+        // runtime classes, they keep merged resolutions (and the plans compiled against them) stable past MAX_RESOLVED_PAIRS
+        private final ConcurrentHashMap<List<ToMappers>, ToMappers> merges = new ConcurrentHashMap<>();
+
+        private MappingTable(Map<Class<?>, FromMappers> map, long version) {
+            this.map = map;
+            this.version = version;
+            this.interfaceSources = map.keySet().stream().anyMatch(Class::isInterface);
+        }
+
+        FromMappers get(Class<?> fromClass) {
+            return map.getOrDefault(fromClass, FromMappers.EMPTY);
+        }
+
+        /**
+         * Lookups don't allocate, supertypes are only walked the first time a runtime pair is seen
+         */
+        ToMappers resolve(Class<?> fromClass, Class<?> toClass) {
+            if(map.isEmpty()) {
+                return ToMappers.EMPTY;
+            }
+            ToMappers toMappers = resolved.get(fromClass, toClass);
+            if(toMappers == null) {
+                toMappers = resolveSupertypes(fromClass, toClass);
+                if(resolvedCount.incrementAndGet() > MAX_RESOLVED_PAIRS) { // approximately, racing threads may overshoot a bit
+                    resolved.clear(); // the pairs still in use get resolved again, merges staying the same instances
+                    resolvedCount.set(1);
+                }
+                resolved.put(fromClass, toClass, toMappers);
+            }
+            return toMappers;
+        }
+
+        /**
+         * Merges the mappings of every (source supertype, target supertype) pair, the nearest source supertype then
+         * the nearest target supertype winning for a given source prop.
+         * @return the mappings of the only pair found as is, or the same merge of several pairs' each time,
+         * so that plans compiled against them stay valid
+         */
+        private ToMappers resolveSupertypes(Class<?> fromClass, Class<?> toClass) {
+            if(!interfaceSources && !hasMappedSuperclass(fromClass)) {
+                return ToMappers.EMPTY; // the usual case for unrelated classes, not allocating
+            }
+            List<ToMappers> found = new ArrayList<>(2);
+            List<Class<?>> toTypes = null;
+            for (Class<?> fromType : supertypes(fromClass)) {
+                FromMappers fromMappers = map.get(fromType);
+                if(fromMappers == null) {
+                    continue;
+                }
+                if(toTypes == null) {
+                    toTypes = supertypes(toClass);
+                }
+                for (Class<?> toType : toTypes) {
+                    ToMappers toMappers = fromMappers.map.get(toType);
+                    if(toMappers != null) {
+                        found.add(toMappers);
+                    }
+                }
+            }
+            switch (found.size()) {
+                case 0:
+                    return ToMappers.EMPTY;
+                case 1:
+                    return found.get(0);
+                default:
+                    return merges.computeIfAbsent(found, MappingTable::merge); // ToMappers compare by identity
+            }
+        }
+
+        private static ToMappers merge(List<ToMappers> nearestFirst) {
+            Map<String, MappingDescriptor> merged = new HashMap<>();
+            long version = 0;
+            for (ToMappers toMappers : nearestFirst) {
+                for (MappingDescriptor descriptor : toMappers) {
+                    merged.putIfAbsent(descriptor.fromPropName, descriptor);
+                }
+                version = Math.max(version, toMappers.version);
+            }
+            return new ToMappers(unmodifiableMap(merged), version);
+        }
+
+        private boolean hasMappedSuperclass(Class<?> clazz) {
+            for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+                if(map.containsKey(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return clazz, its superclasses then its interfaces, nearest first, Object excluded
+         */
+        private static List<Class<?>> supertypes(Class<?> clazz) {
+            Set<Class<?>> supertypes = new LinkedHashSet<>();
+            for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+                supertypes.add(type);
+            }
+            List<Class<?>> pending = new ArrayList<>(supertypes);
+            for (int i = 0; i < pending.size(); i++) {
+                for (Class<?> iface : pending.get(i).getInterfaces()) {
+                    if(supertypes.add(iface)) {
+                        pending.add(iface);
+                    }
+                }
+            }
+            return new ArrayList<>(supertypes);
+        }
+
+        MappingTable with(Class<?> fromClass, FromMappers fromMappers, long version) {
+            Map<Class<?>, FromMappers> newMap = new HashMap<>(map);
+            if(fromMappers.map.isEmpty()) {
+                newMap.remove(fromClass);
+            } else {
+                newMap.put(fromClass, fromMappers);
+            }
+            return new MappingTable(unmodifiableMap(newMap), version);
+        }
+    }
+
     /**
      * This class contains each defined mapping (target classes => target props) associated with a source class
      */
     public static final class FromMappers implements Iterable<ToMappers> {
-        private HashMap<Class<?>, ToMappers> map = new HashMap<>(); // Class is toClass
+        static final FromMappers EMPTY = new FromMappers(emptyMap());
+
+        private final Map<Class<?>, ToMappers> map; // Class is toClass
+
+        private FromMappers(Map<Class<?>, ToMappers> map) {
+            this.map = map;
+        }
 
         public ToMappers get(Class<?> toClass) {
-            return map.computeIfAbsent(toClass, c -> new ToMappers());
+            return map.getOrDefault(toClass, ToMappers.EMPTY);
+        }
+
+        FromMappers with(Class<?> toClass, ToMappers toMappers) {
+            Map<Class<?>, ToMappers> newMap = new HashMap<>(map);
+            if(toMappers.map.isEmpty()) {
+                newMap.remove(toClass);
+            } else {
+                newMap.put(toClass, toMappers);
+            }
+            return new FromMappers(unmodifiableMap(newMap));
         }
 
         @Override
@@ -153,13 +527,29 @@ public class FromToMapper {
     }
 
     /**
-     * This class contains each defined mapping (target prop => mapping description) associated to a {source class, target class} couple
+     * This class contains each defined mapping (target prop => mapping description) associated to a {source class, target class} couple.
+     * It is immutable, any change results in a new instance with a new version.
      */
     public static final class ToMappers implements Iterable<MappingDescriptor> {
-        private HashMap<String, MappingDescriptor> map = new HashMap<>(); // String is fromPropName
+        static final ToMappers EMPTY = new ToMappers(emptyMap(), 0);
+
+        private final Map<String, MappingDescriptor> map; // String is fromPropName
+        private final long version;
+
+        private ToMappers(Map<String, MappingDescriptor> map, long version) {
+            this.map = map;
+            this.version = version;
+        }
+
+        /**
+         * @return the mapping table version this pair was last changed at
+         */
+        public long getVersion() {
+            return version;
+        }
 
-        public MappingDescriptor registerMapping(String fromPropName, MappingDescriptor mappingFunction) {
-            return map.put(fromPropName, mappingFunction);
+        public MappingDescriptor get(String fromPropName) {
+            return map.get(fromPropName);
         }
 
         public Set<String> keySet() {
@@ -175,10 +565,18 @@ public class FromToMapper {
             return map.values().iterator();
         }
 
-        public ToMappers migrate(GettersAndSetters gs) {
-            ToMappers result = new ToMappers();
-            map.forEach((fromPropName, mappingDescriptor) -> result.registerMapping(fromPropName, mappingDescriptor.migrate(gs)));
-            return result;
+        ToMappers with(String fromPropName, MappingDescriptor descriptor, long version) {
+            Map<String, MappingDescriptor> newMap = new HashMap<>(map);
+            newMap.put(fromPropName, descriptor);
+            return new ToMappers(unmodifiableMap(newMap), version);
+        }
+
+        /**
+         * @return a copy without the matching descriptors, or this if none matched
+         */
+        ToMappers without(Predicate<MappingDescriptor> filter, long version) {
+            Map<String, MappingDescriptor> newMap = new HashMap<>(map);
+            return newMap.values().removeIf(filter) ? new ToMappers(unmodifiableMap(newMap), version) : this;
         }
     }
 
@@ -206,10 +604,28 @@ public class FromToMapper {
             this.toSetter = toSetter;
         }
 
-        public MappingDescriptor migrate(GettersAndSetters gsTo) {
-            Method migratedSetter = gsTo.setter(toPropName);
-            return new MappingDescriptor(fromClassName, fromPropName, fromGetter,
-                                         gsTo.targetClassName, toPropName, migratedSetter);
+        public String getFromClassName() {
+            return fromClassName;
+        }
+
+        public String getFromPropName() {
+            return fromPropName;
+        }
+
+        public Method getFromGetter() {
+            return fromGetter;
+        }
+
+        public String getToClassName() {
+            return toClassName;
+        }
+
+        public String getToPropName() {
+            return toPropName;
+        }
+
+        public Method getToSetter() {
+            return toSetter;
         }
     }
 }
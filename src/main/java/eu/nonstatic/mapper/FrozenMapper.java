@@ -0,0 +1,174 @@
+package eu.nonstatic.mapper;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static eu.nonstatic.mapper.ReflectionUtils.isMappable;
+
+/**
+ * Immutable snapshot of the plans of a fixed set of (source class, target class) pairs, see {@link AutoMapper#freeze(Collection)}.
+ * Nothing gets registered nor compiled anymore: a pair that wasn't frozen fails fast.
+ * Plans are looked up in final arrays by the identity of both classes, without locking nor allocating,
+ * and applied to exact runtime classes only. Meant to be held in a static final field once the configuration is done.
+ */
+public final class FrozenMapper {
+
+    // open addressing by (source class, target class), a null source class marking an empty slot
+    private final Class<?>[] fromClasses;
+    private final Class<?>[] toClasses;
+    private final MappingPlan[] plans; // to instances, null when the target class can't be instantiated
+    private final Constructor<?>[] constructors;
+    private final MappingPlan[] builderPlans; // to builders, null when the target class has none
+    private final Method[] builderMethods;
+    private final int mask;
+    private final List<ClassPair> pairs;
+
+
+    /**
+     * Where the plans being frozen come from, so that explicit mappings are taken along.
+     * Plans must be compiled for this mapper only, not shared with a mapper which may still change them.
+     */
+    interface PlanSource {
+        /**
+         * @param gsTo either toClass' registration or its builder's
+         */
+        MappingPlan plan(GettersAndSetters gsFrom, GettersAndSetters gsTo, Class<?> toClass);
+    }
+
+    FrozenMapper(Collection<ClassPair> pairs, AutoMapper mapper, PlanSource planSource) {
+        LinkedHashSet<ClassPair> distinctPairs = new LinkedHashSet<>(pairs);
+        int capacity = Integer.highestOneBit(Math.max(distinctPairs.size(), 1)) << 2; // at most half full
+        this.fromClasses = new Class<?>[capacity];
+        this.toClasses = new Class<?>[capacity];
+        this.plans = new MappingPlan[capacity];
+        this.constructors = new Constructor<?>[capacity];
+        this.builderPlans = new MappingPlan[capacity];
+        this.builderMethods = new Method[capacity];
+        this.mask = capacity - 1;
+
+        for (ClassPair pair : distinctPairs) {
+            Class<?> fromClass = pair.getFromClass(), toClass = pair.getToClass();
+            GettersAndSetters gsFrom = mapper.getRegistrationForced(fromClass), gsTo = mapper.getRegistrationForced(toClass);
+            int slot = slot(fromClass, toClass);
+            fromClasses[slot] = fromClass;
+            toClasses[slot] = toClass;
+            if(isMappable(toClass)) {
+                try {
+                    constructors[slot] = toClass.getDeclaredConstructor();
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalArgumentException(e); // isMappable checked it
+                }
+                plans[slot] = planSource.plan(gsFrom, gsTo, toClass);
+            }
+            GettersAndSetters.BuilderContext builderContext = mapper.findBuilderContext(toClass);
+            if(builderContext != null) {
+                builderMethods[slot] = builderContext.method;
+                builderPlans[slot] = planSource.plan(gsFrom, builderContext.gettersAndSetters, toClass);
+            }
+            if(plans[slot] == null && builderPlans[slot] == null) {
+                throw new IllegalArgumentException("Won't be able to map to " + toClass.getName() + ", it has neither a no-args constructor nor a builder");
+            }
+        }
+        this.pairs = Collections.unmodifiableList(new ArrayList<>(distinctPairs));
+    }
+
+    private int slot(Class<?> fromClass, Class<?> toClass) {
+        int hash = 31 * System.identityHashCode(fromClass) + System.identityHashCode(toClass);
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while(fromClasses[slot] != null && (fromClasses[slot] != fromClass || toClasses[slot] != toClass)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @throws IllegalArgumentException if that pair wasn't frozen
+     */
+    private int frozenSlot(Class<?> fromClass, Class<?> toClass) {
+        int slot = slot(fromClass, toClass);
+        if(fromClasses[slot] == null) {
+            throw new IllegalArgumentException(fromClass.getName() + " -> " + toClass.getName() + " wasn't frozen");
+        }
+        return slot;
+    }
+
+
+    public List<ClassPair> getPairs() {
+        return pairs;
+    }
+
+    public boolean isFrozen(Class<?> fromClass, Class<?> toClass) {
+        return fromClasses[slot(fromClass, toClass)] != null;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the pair of runtime classes wasn't frozen
+     */
+    public <F, T> T map(F fromInstance, T toInstance) {
+        if(fromInstance != null && toInstance != null) {
+            int slot = frozenSlot(fromInstance.getClass(), toInstance.getClass());
+            if(plans[slot] == null) {
+                throw new IllegalArgumentException(toInstance.getClass().getName() + " was only frozen as built");
+            }
+            plans[slot].apply(fromInstance, toInstance, null);
+        }
+        return toInstance;
+    }
+
+    /**
+     * @throws IllegalArgumentException if that pair wasn't frozen, or toClass has no no-args constructor
+     */
+    @SuppressWarnings("unchecked")
+    public <F, T> T mapToInstance(F fromInstance, Class<T> toClass) {
+        int slot = frozenSlot(fromInstance.getClass(), toClass);
+        MappingPlan plan = plans[slot];
+        if(plan == null) {
+            throw new IllegalArgumentException(toClass.getName() + " can't be instantiated, map to its builder instead");
+        }
+        T toInstance = (T) invoke(constructors[slot]);
+        plan.apply(fromInstance, toInstance, null);
+        return toInstance;
+    }
+
+    /**
+     * @throws IllegalArgumentException if that pair wasn't frozen, or toClass has no builder
+     */
+    @SuppressWarnings("unchecked")
+    public <B> B mapToBuilder(Object fromInstance, Class<?> toClass) {
+        int slot = frozenSlot(fromInstance.getClass(), toClass);
+        MappingPlan plan = builderPlans[slot];
+        if(plan == null) {
+            throw new IllegalArgumentException(toClass.getName() + " has no builder");
+        }
+        B builder = (B) invoke(builderMethods[slot]);
+        plan.apply(fromInstance, builder, null);
+        return builder;
+    }
+
+    private static Object invoke(Constructor<?> constructor) {
+        try {
+            return constructor.newInstance();
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Object invoke(Method builderMethod) {
+        try {
+            return builderMethod.invoke(null);
+        } catch (InvocationTargetException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenMapper" + pairs;
+    }
+}
@@ -6,13 +6,13 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.Method;
 import java.util.*;
 
+import static eu.nonstatic.mapper.MapperEvents.EVENTS;
 import static eu.nonstatic.mapper.ReflectionUtils.isBuildable;
 import static eu.nonstatic.mapper.ReflectionUtils.isMappable;
 import static java.lang.Character.toLowerCase;
 import static java.lang.Math.min;
 import static java.lang.reflect.Modifier.isPublic;
 import static java.lang.reflect.Modifier.isStatic;
-import static java.util.Collections.sort;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -32,19 +32,30 @@ class GettersAndSetters {
     static final boolean USING_SETTERS_DEFAULT = true;
 
 
-    // not needed for now final Class<?> targetClass;
+    private static final String[] NO_PROPS = new String[0];
+    private static final Method[] NO_METHODS = new Method[0];
+
+
+    final Class<?> targetClass;
     final String targetClassName;
-    final HashMap<String, Method> getters = new HashMap<>();
-    final HashMap<String, Method>  setters = new HashMap<>();
+    // Compact layout: one sorted array of (interned) prop names, the property id being the index in that array,
+    // and accessor arrays indexed by property id (null when the class has no getter/setter for that prop).
+    final String[] props;
+    final Method[] getters;
+    final Method[] setters;
+    final int getterCount;
+    final int setterCount;
     final boolean usingSetPrefix;
     BuilderContext builderContext;
 
 
     private GettersAndSetters(Class<?> clazz, boolean extractGetters, boolean extractSetters, boolean usingSetPrefix) {
-        //this.targetClass = clazz;
+        this.targetClass = clazz;
         this.targetClassName = clazz.getSimpleName();
         this.usingSetPrefix = usingSetPrefix;
 
+        // temporary maps, only used while introspecting
+        HashMap<String, Method> getterMap = new HashMap<>(), setterMap = new HashMap<>();
         Method[] methods = clazz.getMethods(); // does not contain shadowed methods
         for (Method method : methods) {
             int modifiers = method.getModifiers();
@@ -54,7 +65,7 @@ class GettersAndSetters {
                     String getterProp = isGetter(clazz, method);
                     if (getterFound = (getterProp != null)) {
                         log.debug("{} getter: {} => {} {}()", targetClassName, getterProp, method.getReturnType().getSimpleName(), method.getName());
-                        this.getters.put(getterProp, method);
+                        getterMap.put(getterProp, method);
                     }
                 }
 
@@ -62,11 +73,63 @@ class GettersAndSetters {
                     String setterProp = isSetter(clazz, method);
                     if (setterProp != null) {
                         log.debug("{} setter: {} => {}({})", targetClassName, setterProp, method.getName(), method.getParameterTypes()[0]);
-                        this.setters.put(setterProp, method);
+                        setterMap.put(setterProp, method);
                     }
                 }
             }
         }
+
+        TreeSet<String> allProps = new TreeSet<>(getterMap.keySet());
+        allProps.addAll(setterMap.keySet());
+        int propCount = allProps.size();
+        if(propCount == 0) {
+            this.props = NO_PROPS;
+            this.getters = NO_METHODS;
+            this.setters = NO_METHODS;
+        } else {
+            this.props = new String[propCount];
+            this.getters = getterMap.isEmpty() ? NO_METHODS : new Method[propCount];
+            this.setters = setterMap.isEmpty() ? NO_METHODS : new Method[propCount];
+            int id = 0;
+            for (String prop : allProps) {
+                props[id] = prop.intern(); // the same prop names come back over and over across classes
+                if(getters != NO_METHODS) {
+                    getters[id] = getterMap.get(prop);
+                }
+                if(setters != NO_METHODS) {
+                    setters[id] = setterMap.get(prop);
+                }
+                id++;
+            }
+        }
+        this.getterCount = getterMap.size();
+        this.setterCount = setterMap.size();
+    }
+
+
+    /**
+     * For already resolved accessors, eg: from an {@link IntrospectionIndex}
+     * @param props sorted and interned prop names
+     */
+    GettersAndSetters(Class<?> clazz, String[] props, Method[] getters, Method[] setters, boolean usingSetPrefix) {
+        this.targetClass = clazz;
+        this.targetClassName = clazz.getSimpleName();
+        this.usingSetPrefix = usingSetPrefix;
+        this.props = props.length > 0 ? props : NO_PROPS;
+        this.getters = count(getters) > 0 ? getters : NO_METHODS;
+        this.setters = count(setters) > 0 ? setters : NO_METHODS;
+        this.getterCount = count(getters);
+        this.setterCount = count(setters);
+    }
+
+    private static int count(Method[] accessors) {
+        int count = 0;
+        for (Method accessor : accessors) {
+            if(accessor != null) {
+                count++;
+            }
+        }
+        return count;
     }
 
 
@@ -78,25 +141,55 @@ class GettersAndSetters {
         return of(clazz, true, true, usingSetters);
     }
 
+    /**
+     * Getters only, for interfaces to be implemented by views rather than mapped
+     */
+    static GettersAndSetters ofInterface(Class<?> iface) {
+        return new GettersAndSetters(iface, true, false, true);
+    }
+
     public static GettersAndSetters of(Class<?> clazz, boolean getters, boolean setters, boolean usingSetters) {
         if(usingSetters ? isBuildable(clazz) : isMappable(clazz)) {
-            return new GettersAndSetters(clazz, getters, setters, usingSetters);
+            Object event = EVENTS.beginIntrospection();
+            GettersAndSetters gs = new GettersAndSetters(clazz, getters, setters, usingSetters);
+            EVENTS.endIntrospection(event, clazz, gs.propCount());
+            return gs;
         } else {
             throw new IllegalArgumentException("Won't be able to map type " + clazz.getName());
         }
     }
 
 
+    public Class<?> getTargetClass() {
+        return targetClass;
+    }
+
     public String getTargetClassName() {
         return targetClassName;
     }
 
-    public HashMap<String, Method> getters() {
-        return getters;
+    /**
+     * @return a snapshot of the getters, sorted by prop name
+     */
+    public Map<String, Method> getters() {
+        return toMap(getters);
+    }
+
+    /**
+     * @return a snapshot of the setters, sorted by prop name
+     */
+    public Map<String, Method> setters() {
+        return toMap(setters);
     }
 
-    public HashMap<String, Method> setters() {
-        return setters;
+    private Map<String, Method> toMap(Method[] accessors) {
+        Map<String, Method> result = new LinkedHashMap<>();
+        for (int id = 0; id < accessors.length; id++) {
+            if(accessors[id] != null) {
+                result.put(props[id], accessors[id]);
+            }
+        }
+        return result;
     }
 
     public boolean isUsingSetPrefix() {
@@ -112,19 +205,74 @@ class GettersAndSetters {
     }
 
     public Set<String> getterProps() {
-        return getters.keySet();
+        return toMap(getters).keySet();
     }
 
     public Set<String> setterProps() {
-        return setters.keySet();
+        return toMap(setters).keySet();
+    }
+
+    /**
+     * @return the number of known props, ie the upper bound (exclusive) of property ids
+     */
+    public int propCount() {
+        return props.length;
+    }
+
+    public int getterCount() {
+        return getterCount;
+    }
+
+    public int setterCount() {
+        return setterCount;
+    }
+
+    /**
+     * @param prop
+     * @return the property id of prop, or -1 if this class has neither a getter nor a setter for it
+     */
+    public int propId(String prop) {
+        int id = Arrays.binarySearch(props, requireNonNull(prop));
+        return id >= 0 ? id : -1;
+    }
+
+    public String propName(int id) {
+        return props[id];
+    }
+
+    public Method getter(int id) {
+        return id < getters.length ? getters[id] : null;
+    }
+
+    public Method setter(int id) {
+        return id < setters.length ? setters[id] : null;
     }
 
     public Method getter(String prop) {
-        return getters.get(requireNonNull(prop));
+        int id = propId(prop);
+        return id >= 0 ? getter(id) : null;
     }
 
     public Method setter(String prop) {
-        return setters.get(requireNonNull(prop));
+        int id = propId(prop);
+        return id >= 0 ? setter(id) : null;
+    }
+
+    /**
+     * Rough estimation of the heap retained by this metadata, assuming compressed oops.
+     * Prop names are interned hence shared, they're not accounted for.
+     * The builder's own GettersAndSetters is registered separately, it's not accounted for either.
+     */
+    long estimatedBytes() {
+        long bytes = FootprintReport.GETTERS_AND_SETTERS_SHALLOW_BYTES
+                + FootprintReport.arrayBytes(props.length)
+                + (getters != NO_METHODS ? FootprintReport.arrayBytes(getters.length) : 0)
+                + (setters != NO_METHODS ? FootprintReport.arrayBytes(setters.length) : 0)
+                + (long)(getterCount + setterCount) * FootprintReport.METHOD_BYTES;
+        if(builderContext != null) {
+            bytes += FootprintReport.BUILDER_CONTEXT_SHALLOW_BYTES + FootprintReport.METHOD_BYTES;
+        }
+        return bytes;
     }
 
 
@@ -168,36 +316,39 @@ class GettersAndSetters {
 
 
     public void checkGettersContain(Collection<String> props) throws IllegalArgumentException {
-        checkContains(getterProps(), props);
+        checkContains(getters, props);
     }
 
     public void checkSettersContain(Collection<String> props) throws IllegalArgumentException {
-        checkContains(setterProps(), props);
+        checkContains(setters, props);
     }
 
-    private void checkContains(Collection<String> gsProps, Collection<String> checkedProps) throws IllegalArgumentException {
+    private void checkContains(Method[] accessors, Collection<String> checkedProps) throws IllegalArgumentException {
         int checkedPropsSize;
         if(checkedProps != null && (checkedPropsSize = checkedProps.size()) > 0) {
-            List<String> unknown = new ArrayList<>(checkedPropsSize);
+            List<String> unknown = null;
             for (String prop : checkedProps) {
-                if (!gsProps.contains(prop)) {
+                int id = propId(prop);
+                if (id < 0 || id >= accessors.length || accessors[id] == null) {
+                    if(unknown == null) {
+                        unknown = new ArrayList<>(checkedPropsSize);
+                    }
                     unknown.add(prop);
                 }
             }
-            if(!unknown.isEmpty()) {
+            if(unknown != null) {
                 throw new IllegalArgumentException("Unknown props: " + unknown);
             }
         }
     }
 
     public List<String> getMappableProps(GettersAndSetters gs) {
-        List<String> result = new ArrayList<>(min(getters.size(), gs.setters.size()));
-        for (String propertyName : getterProps()) {
-            if(gs.setters.get(propertyName) != null) {
-                result.add(propertyName);
+        List<String> result = new ArrayList<>(min(getterCount, gs.setterCount));
+        for (int id = 0; id < getters.length; id++) {
+            if(getters[id] != null && gs.setter(props[id]) != null) {
+                result.add(props[id]); // already sorted
             }
         }
-        sort(result);
         return result;
     }
 
@@ -217,6 +368,7 @@ class GettersAndSetters {
         Class<?> builderClass;
         Method method;
         GettersAndSetters gettersAndSetters;
+        Method buildMethod; // lazily, only when built by the mapper
 
         public BuilderContext(Class<?> builderClass, Method method, GettersAndSetters gettersAndSetters) {
             this.builderClass = builderClass;
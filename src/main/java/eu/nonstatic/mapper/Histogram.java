@@ -0,0 +1,44 @@
+package eu.nonstatic.mapper;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations in power of 2 buckets: bucket i holds durations in [2^(i-1), 2^i[ nanos.
+ * Good enough for percentiles within a factor 2, for 64 longs.
+ */
+final class Histogram {
+
+    private static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+
+    void record(long nanos) {
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, BUCKETS - Long.numberOfLeadingZeros(nanos)));
+    }
+
+    long[] snapshot() {
+        long[] result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param snapshot as given by {@link #snapshot()}
+     * @param count how many durations were recorded
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket the percentile falls in
+     */
+    static long percentile(long[] snapshot, long count, double percentile) {
+        long rank = (long)Math.ceil(count * percentile / 100.0), seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if(seen >= rank && seen > 0) {
+                return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,55 @@
+package eu.nonstatic.mapper;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, lossy and lock-free interning of equal values: one slot per hash bucket, a colliding value replacing the former one.
+ * Races only cost some sharing, never correctness, since the values handed out are always equal to the given ones.
+ */
+final class InternTable {
+
+    private final AtomicReferenceArray<Object> slots;
+    private final int mask;
+    private final LongAdder shared = new LongAdder();
+
+
+    /**
+     * @param size rounded up to a power of 2
+     */
+    InternTable(int size) {
+        if(size <= 0) {
+            throw new IllegalArgumentException("Table size must be positive: " + size);
+        }
+        int capacity = Integer.highestOneBit(size);
+        if(capacity < size) {
+            capacity <<= 1;
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the instance equal to value seen earlier if still in the table, else value itself which is then kept
+     */
+    Object intern(Object value) {
+        if(value == null) {
+            return null;
+        }
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Object interned = slots.get(slot);
+        if(interned != null && (interned == value || interned.equals(value))) {
+            if(interned != value) {
+                shared.increment();
+            }
+            return interned;
+        }
+        slots.lazySet(slot, value);
+        return value;
+    }
+
+    long sharedCount() {
+        return shared.sum();
+    }
+}
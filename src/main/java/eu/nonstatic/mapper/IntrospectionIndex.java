@@ -0,0 +1,429 @@
+package eu.nonstatic.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import static eu.nonstatic.mapper.GettersAndSetters.USING_SETTERS_DEFAULT;
+import static eu.nonstatic.mapper.ReflectionUtils.findBuilderMethod;
+import static eu.nonstatic.mapper.ReflectionUtils.isBuildable;
+import static eu.nonstatic.mapper.ReflectionUtils.isBuilderUsingSetters;
+import static eu.nonstatic.mapper.ReflectionUtils.isMappable;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Introspection results computed ahead of time (typically at build time, see {@link #main(String[])}),
+ * following the very same rules as {@link GettersAndSetters} and {@link ReflectionUtils#findBuilderMethod(Class)}.
+ * Once loaded into an {@link AutoMapper}, registering an indexed class only resolves its accessors by name
+ * instead of introspecting all of its methods. Each class' declared method counts are fingerprinted, so that a class
+ * which changed since it was indexed (eg: gained a prop) is introspected as usual rather than resolved from stale names.
+ * The same index can produce a GraalVM reflect-config.json.
+ */
+public final class IntrospectionIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(IntrospectionIndex.class);
+
+    private static final int MAGIC = 0x41_4D_49_58; // AMIX
+    private static final int VERSION = 3;
+    private static final String CLASS_SUFFIX = ".class";
+
+    private static final Map<String, Class<?>> PRIMITIVES = new HashMap<>();
+    static {
+        for (Class<?> primitive : new Class<?>[]{boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class}) {
+            PRIMITIVES.put(primitive.getName(), primitive);
+        }
+    }
+
+    private final Map<String, ClassEntry> entries; // FQCN => entry
+
+
+    private IntrospectionIndex(Map<String, ClassEntry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Introspects the given classes, and the builders they may have
+     */
+    public static IntrospectionIndex of(Collection<Class<?>> classes) {
+        Map<String, ClassEntry> entries = new TreeMap<>();
+        for (Class<?> clazz : classes) {
+            index(clazz, entries);
+        }
+        return new IntrospectionIndex(entries);
+    }
+
+    /**
+     * Introspects the classes found under the given packages (sub-packages included) of the class loader's classpath.
+     * Interfaces, enums, annotations, anonymous and synthetic classes are left out.
+     */
+    public static IntrospectionIndex scan(ClassLoader loader, String... packages) throws IOException {
+        List<Class<?>> classes = new ArrayList<>();
+        for (String pkg : packages) {
+            for (String className : findClassNames(loader, pkg)) {
+                try {
+                    Class<?> clazz = Class.forName(className, false, loader);
+                    if(isBuildable(clazz) && !clazz.isAnonymousClass() && !clazz.isSynthetic()) {
+                        classes.add(clazz);
+                    }
+                } catch (ClassNotFoundException | LinkageError e) {
+                    log.debug("Skipping {}: {}", className, e.toString());
+                }
+            }
+        }
+        return of(classes);
+    }
+
+    private static void index(Class<?> clazz, Map<String, ClassEntry> entries) {
+        if(!entries.containsKey(clazz.getName())) {
+            GettersAndSetters gs = GettersAndSetters.of(clazz, USING_SETTERS_DEFAULT);
+            ClassEntry entry = new ClassEntry(gs);
+            entries.put(clazz.getName(), entry);
+
+            try {
+                Method builderMethod = findBuilderMethod(clazz);
+                // same as AutoMapper: the concrete builder class is only known once built
+                Class<?> builderClass = builderMethod.invoke(null).getClass();
+                boolean builderUsingSetters = isBuilderUsingSetters(clazz);
+                ClassEntry builderEntry = entries.get(builderClass.getName());
+                if(builderEntry == null || builderEntry.usingSetters != builderUsingSetters) { // eg: indexed on its own, before its owner
+                    entries.put(builderClass.getName(), new ClassEntry(GettersAndSetters.of(builderClass, builderUsingSetters)));
+                }
+                entry.builderMethod = builderMethod.getName(); // only once the builder is indexed
+                entry.builderClassName = builderClass.getName();
+            } catch (NoSuchMethodException e) {
+                // no builder, fine
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                log.debug("Can't index the builder of {}: {}", clazz.getName(), e.toString());
+            }
+        }
+    }
+
+    private static Set<String> findClassNames(ClassLoader loader, String pkg) throws IOException {
+        Set<String> classNames = new TreeSet<>();
+        String path = pkg.replace('.', '/');
+        Enumeration<URL> resources = loader.getResources(path);
+        while(resources.hasMoreElements()) {
+            URL url = resources.nextElement();
+            if("jar".equals(url.getProtocol())) {
+                JarURLConnection connection = (JarURLConnection)url.openConnection();
+                connection.setUseCaches(false); // so that closing it doesn't close a cached JarFile others may use
+                try (JarFile jar = connection.getJarFile()) {
+                    Enumeration<JarEntry> jarEntries = jar.entries();
+                    while(jarEntries.hasMoreElements()) {
+                        String name = jarEntries.nextElement().getName();
+                        if(name.startsWith(path + '/') && name.endsWith(CLASS_SUFFIX)) {
+                            addClassName(name, classNames);
+                        }
+                    }
+                }
+            } else if("file".equals(url.getProtocol())) {
+                File dir;
+                try {
+                    dir = new File(url.toURI());
+                } catch (URISyntaxException e) {
+                    dir = new File(URLDecoder.decode(url.getPath(), StandardCharsets.UTF_8.name()));
+                }
+                walk(dir, path, classNames);
+            }
+        }
+        return classNames;
+    }
+
+    private static void walk(File dir, String path, Set<String> classNames) {
+        File[] files = dir.listFiles();
+        if(files != null) {
+            for (File file : files) {
+                String filePath = path + '/' + file.getName();
+                if(file.isDirectory()) {
+                    walk(file, filePath, classNames);
+                } else if(filePath.endsWith(CLASS_SUFFIX)) {
+                    addClassName(filePath, classNames);
+                }
+            }
+        }
+    }
+
+    private static void addClassName(String classFilePath, Set<String> classNames) {
+        String className = classFilePath.substring(0, classFilePath.length() - CLASS_SUFFIX.length()).replace('/', '.');
+        if(!className.endsWith("module-info") && !className.endsWith("package-info")) {
+            classNames.add(className);
+        }
+    }
+
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(Class<?> clazz) {
+        return entries.containsKey(clazz.getName());
+    }
+
+
+    /**
+     * @return clazz's metadata resolved from this index, or null if it isn't indexed, was indexed with other settings,
+     * or doesn't match the index anymore
+     */
+    GettersAndSetters resolve(Class<?> clazz, boolean usingSetters) {
+        ClassEntry entry = entries.get(clazz.getName());
+        if(entry != null && entry.usingSetters == usingSetters) {
+            if(entry.fingerprint != fingerprint(clazz)) {
+                log.debug("Index out of sync for {}, its methods changed, falling back on introspection", clazz.getName());
+                return null;
+            }
+            try {
+                int propCount = entry.props.length;
+                String[] props = new String[propCount];
+                Method[] getters = new Method[propCount], setters = new Method[propCount];
+                for (int id = 0; id < propCount; id++) {
+                    props[id] = entry.props[id].intern();
+                    if(entry.getters[id] != null) {
+                        getters[id] = clazz.getMethod(entry.getters[id]);
+                    }
+                    if(entry.setters[id] != null) {
+                        setters[id] = clazz.getMethod(entry.setters[id], toClass(entry.setterTypes[id], clazz.getClassLoader()));
+                    }
+                }
+                return new GettersAndSetters(clazz, props, getters, setters, usingSetters);
+            } catch (NoSuchMethodException | ClassNotFoundException e) {
+                log.debug("Index out of sync for {}, falling back on introspection: {}", clazz.getName(), e.toString());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return clazz's builder context resolved from this index, builder's GettersAndSetters being given by gsResolver,
+     * or null if it isn't indexed with a builder
+     */
+    GettersAndSetters.BuilderContext resolveBuilder(Class<?> clazz, BuilderRegistrar gsResolver) {
+        ClassEntry entry = entries.get(clazz.getName());
+        if(entry != null && entry.builderMethod != null) {
+            try {
+                Method builderMethod = clazz.getMethod(entry.builderMethod);
+                Class<?> builderClass = toClass(entry.builderClassName, clazz.getClassLoader());
+                GettersAndSetters builderGS = gsResolver.register(builderClass, isBuilderUsingSetters(clazz)); // as AutoMapper does
+                return new GettersAndSetters.BuilderContext(builderClass, builderMethod, builderGS);
+            } catch (NoSuchMethodException | ClassNotFoundException e) {
+                log.debug("Index out of sync for {}'s builder, falling back on introspection: {}", clazz.getName(), e.toString());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hash of the declared method counts of clazz and its superclasses, telling a class gained (or lost) methods since it
+     * was indexed without merging its public methods as introspecting it would. Removed or renamed accessors are caught
+     * anyway, resolving them by name. Default methods of interfaces are left out.
+     */
+    static int fingerprint(Class<?> clazz) {
+        int fingerprint = 1;
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            fingerprint = 31 * fingerprint + type.getDeclaredMethods().length;
+        }
+        return fingerprint;
+    }
+
+    interface BuilderRegistrar {
+        GettersAndSetters register(Class<?> builderClass, boolean usingSetters);
+    }
+
+    private static Class<?> toClass(String className, ClassLoader loader) throws ClassNotFoundException {
+        Class<?> primitive = PRIMITIVES.get(className);
+        return primitive != null ? primitive : Class.forName(className, false, loader);
+    }
+
+
+    public void writeTo(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (ClassEntry entry : entries.values()) {
+            out.writeUTF(entry.className);
+            out.writeBoolean(entry.usingSetters);
+            out.writeBoolean(entry.noArgsConstructor);
+            out.writeInt(entry.fingerprint);
+            writeNullable(out, entry.builderMethod);
+            writeNullable(out, entry.builderClassName);
+            out.writeInt(entry.props.length);
+            for (int id = 0; id < entry.props.length; id++) {
+                out.writeUTF(entry.props[id]);
+                writeNullable(out, entry.getters[id]);
+                writeNullable(out, entry.setters[id]);
+                writeNullable(out, entry.setterTypes[id]);
+            }
+        }
+        out.flush();
+    }
+
+    public static IntrospectionIndex readFrom(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if(in.readInt() != MAGIC) {
+            throw new IOException("Not an introspection index");
+        }
+        int version = in.readInt();
+        if(version != VERSION) {
+            throw new IOException("Unsupported introspection index version " + version);
+        }
+        int size = in.readInt();
+        Map<String, ClassEntry> entries = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            ClassEntry entry = new ClassEntry(in.readUTF(), in.readBoolean());
+            entry.noArgsConstructor = in.readBoolean();
+            entry.fingerprint = in.readInt();
+            entry.builderMethod = readNullable(in);
+            entry.builderClassName = readNullable(in);
+            int propCount = in.readInt();
+            entry.props = new String[propCount];
+            entry.getters = new String[propCount];
+            entry.setters = new String[propCount];
+            entry.setterTypes = new String[propCount];
+            for (int id = 0; id < propCount; id++) {
+                entry.props[id] = in.readUTF();
+                entry.getters[id] = readNullable(in);
+                entry.setters[id] = readNullable(in);
+                entry.setterTypes[id] = readNullable(in);
+            }
+            entries.put(entry.className, entry);
+        }
+        return new IntrospectionIndex(entries);
+    }
+
+    private static void writeNullable(DataOutputStream out, String s) throws IOException {
+        out.writeUTF(s != null ? s : ""); // method and class names are never empty
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        String s = in.readUTF();
+        return s.isEmpty() ? null : s;
+    }
+
+
+    /**
+     * Writes a GraalVM native-image reflection configuration registering the indexed accessors, builder methods
+     * and no-args constructors.
+     */
+    public void writeReflectConfig(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder("[\n");
+        boolean firstClass = true;
+        for (ClassEntry entry : entries.values()) {
+            if(!firstClass) {
+                sb.append(",\n");
+            }
+            firstClass = false;
+            sb.append("  {\n    \"name\" : \"").append(entry.className).append("\",\n    \"methods\" : [");
+            List<String> methods = new ArrayList<>();
+            if(entry.noArgsConstructor) {
+                methods.add(reflectMethod("<init>", null));
+            }
+            if(entry.builderMethod != null) {
+                methods.add(reflectMethod(entry.builderMethod, null));
+            }
+            for (int id = 0; id < entry.props.length; id++) {
+                if(entry.getters[id] != null) {
+                    methods.add(reflectMethod(entry.getters[id], null));
+                }
+                if(entry.setters[id] != null) {
+                    methods.add(reflectMethod(entry.setters[id], entry.setterTypes[id]));
+                }
+            }
+            sb.append(String.join(",", methods)).append("\n    ]\n  }");
+        }
+        writer.write(sb.append("\n]\n").toString());
+        writer.flush();
+    }
+
+    private static String reflectMethod(String name, String paramType) {
+        return "\n      { \"name\" : \"" + name + "\", \"parameterTypes\" : [" + (paramType != null ? "\"" + paramType + "\"" : "") + "] }";
+    }
+
+
+    /**
+     * Build time entry point, eg: from a Gradle JavaExec task having the classes to index on its classpath.
+     * Usage: IntrospectionIndex &lt;index file&gt; [--reflect-config &lt;json file&gt;] &lt;package&gt;...
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2) {
+            System.err.println("Usage: " + IntrospectionIndex.class.getName() + " <index file> [--reflect-config <json file>] <package>...");
+            System.exit(1);
+        }
+
+        File indexFile = new File(args[0]);
+        File reflectConfigFile = null;
+        List<String> packages = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if("--reflect-config".equals(args[i]) && i + 1 < args.length) {
+                reflectConfigFile = new File(args[++i]);
+            } else {
+                packages.add(args[i]);
+            }
+        }
+
+        IntrospectionIndex index = scan(Thread.currentThread().getContextClassLoader(), packages.toArray(new String[0]));
+        try (OutputStream os = new FileOutputStream(indexFile)) {
+            index.writeTo(os);
+        }
+        if(reflectConfigFile != null) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(reflectConfigFile), StandardCharsets.UTF_8)) {
+                index.writeReflectConfig(writer);
+            }
+        }
+        System.out.println("Indexed " + index.size() + " classes into " + indexFile);
+    }
+
+
+    /**
+     * Names only, the actual methods are resolved when the class gets registered
+     */
+    private static final class ClassEntry {
+        final String className;
+        final boolean usingSetters;
+        boolean noArgsConstructor;
+        int fingerprint;
+        String builderMethod;
+        String builderClassName;
+        String[] props;
+        String[] getters;
+        String[] setters;
+        String[] setterTypes;
+
+        ClassEntry(GettersAndSetters gs) {
+            Class<?> clazz = gs.targetClass;
+            this.className = clazz.getName();
+            this.usingSetters = gs.usingSetPrefix;
+            this.noArgsConstructor = isMappable(clazz);
+            this.fingerprint = fingerprint(clazz);
+            int propCount = gs.propCount();
+            this.props = gs.props.clone();
+            this.getters = new String[propCount];
+            this.setters = new String[propCount];
+            this.setterTypes = new String[propCount];
+            for (int id = 0; id < propCount; id++) {
+                Method getter = gs.getter(id), setter = gs.setter(id);
+                if(getter != null) {
+                    getters[id] = getter.getName();
+                }
+                if(setter != null) {
+                    setters[id] = setter.getName();
+                    setterTypes[id] = setter.getParameterTypes()[0].getName();
+                }
+            }
+        }
+
+        ClassEntry(String className, boolean usingSetters) {
+            this.className = requireNonNull(className);
+            this.usingSetters = usingSetters;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package eu.nonstatic.mapper;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events, only loaded when jdk.jfr is available. See {@link MapperEvents}
+ */
+final class JfrMapperEvents extends MapperEvents {
+
+    private static final String CATEGORY = "AutoMapper";
+
+    private final EventType introspectionType = EventType.getEventType(IntrospectionEvent.class);
+    private final EventType builderDiscoveryType = EventType.getEventType(BuilderDiscoveryEvent.class);
+    private final EventType planCompilationType = EventType.getEventType(PlanCompilationEvent.class);
+    private final EventType slowMappingType = EventType.getEventType(SlowMappingEvent.class);
+
+
+    @Override
+    Object beginIntrospection() {
+        return begin(introspectionType.isEnabled() ? new IntrospectionEvent() : null);
+    }
+
+    @Override
+    void endIntrospection(Object event, Class<?> clazz, int propCount) {
+        IntrospectionEvent e = (IntrospectionEvent) event;
+        if(e != null && end(e)) {
+            e.className = clazz.getName();
+            e.propCount = propCount;
+            e.commit();
+        }
+    }
+
+    @Override
+    Object beginBuilderDiscovery() {
+        return begin(builderDiscoveryType.isEnabled() ? new BuilderDiscoveryEvent() : null);
+    }
+
+    @Override
+    void endBuilderDiscovery(Object event, Class<?> clazz, String builderMethod) {
+        BuilderDiscoveryEvent e = (BuilderDiscoveryEvent) event;
+        if(e != null && end(e)) {
+            e.className = clazz.getName();
+            e.builderMethod = builderMethod;
+            e.commit();
+        }
+    }
+
+    @Override
+    Object beginPlanCompilation() {
+        return begin(planCompilationType.isEnabled() ? new PlanCompilationEvent() : null);
+    }
+
+    @Override
+    void endPlanCompilation(Object event, Class<?> fromClass, Class<?> toClass, int bindingCount, int explicitCount) {
+        PlanCompilationEvent e = (PlanCompilationEvent) event;
+        if(e != null && end(e)) {
+            e.fromClass = fromClass.getName();
+            e.toClass = toClass.getName();
+            e.bindingCount = bindingCount;
+            e.explicitCount = explicitCount;
+            e.commit();
+        }
+    }
+
+    @Override
+    Object beginMapping() {
+        return begin(slowMappingType.isEnabled() ? new SlowMappingEvent() : null);
+    }
+
+    @Override
+    void endMapping(Object event, Class<?> fromClass, Class<?> toClass, int propertyCount) {
+        SlowMappingEvent e = (SlowMappingEvent) event;
+        if(e != null && end(e)) {
+            e.fromClass = fromClass.getName();
+            e.toClass = toClass.getName();
+            e.propertyCount = propertyCount;
+            e.commit();
+        }
+    }
+
+    private static Event begin(Event event) {
+        if(event != null) {
+            event.begin();
+        }
+        return event;
+    }
+
+    /**
+     * @return true if the event should be committed, eg: it lasted longer than its threshold
+     */
+    private static boolean end(Event event) {
+        event.end();
+        return event.shouldCommit();
+    }
+
+
+    @Name("eu.nonstatic.mapper.Introspection")
+    @Label("Class Introspection")
+    @Description("Getters and setters extraction from a class")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class IntrospectionEvent extends Event {
+        @Label("Class")
+        String className;
+        @Label("Property Count")
+        int propCount;
+    }
+
+    @Name("eu.nonstatic.mapper.BuilderDiscovery")
+    @Label("Builder Discovery")
+    @Description("Search for a builder method on a class")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class BuilderDiscoveryEvent extends Event {
+        @Label("Class")
+        String className;
+        @Label("Builder Method")
+        String builderMethod;
+    }
+
+    @Name("eu.nonstatic.mapper.PlanCompilation")
+    @Label("Plan Compilation")
+    @Description("Matching of a source class' getters with a target class' setters")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static final class PlanCompilationEvent extends Event {
+        @Label("From Class")
+        String fromClass;
+        @Label("To Class")
+        String toClass;
+        @Label("Binding Count")
+        int bindingCount;
+        @Label("Explicit Mapping Count")
+        int explicitCount;
+    }
+
+    @Name("eu.nonstatic.mapper.SlowMapping")
+    @Label("Slow Mapping")
+    @Description("Mapping of an instance which took longer than the threshold")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    static final class SlowMappingEvent extends Event {
+        @Label("From Class")
+        String fromClass;
+        @Label("To Class")
+        String toClass;
+        @Label("Property Count")
+        int propertyCount;
+    }
+}
@@ -0,0 +1,242 @@
+package eu.nonstatic.mapper;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MapperMetrics} based on {@link LongAdder}s, so that concurrent mappings don't contend on counters.
+ * Call counts are exact, latencies are sampled (1 call in sampleRate is timed) into power of 2 buckets.
+ * {@link #snapshot()} is cheap enough to be scraped every few seconds.
+ */
+public class LongAdderMapperMetrics implements MapperMetrics {
+
+    private static final int DEFAULT_SAMPLE_RATE = 16;
+
+    private final int sampleMask;
+    private final ConcurrentHashMap<ClassPair, Pair> pairs = new ConcurrentHashMap<>();
+    private final LongAdder registryHits = new LongAdder();
+    private final LongAdder registryMisses = new LongAdder();
+    private final LongAdder registrations = new LongAdder();
+    private final LongAdder registrationNanos = new LongAdder();
+    private final LongAdder builderDiscoveries = new LongAdder();
+    private final LongAdder builderDiscoveryNanos = new LongAdder();
+
+
+    public LongAdderMapperMetrics() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate 1 mapping out of sampleRate is timed, rounded up to a power of 2. 1 to time them all.
+     */
+    public LongAdderMapperMetrics(int sampleRate) {
+        if(sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+        int powerOf2 = sampleRate == 1 ? 1 : Integer.highestOneBit(sampleRate - 1) << 1;
+        this.sampleMask = powerOf2 - 1;
+    }
+
+
+    @Override
+    public PairRecorder pairRecorder(Class<?> fromClass, Class<?> toClass) {
+        return pairs.computeIfAbsent(ClassPair.of(fromClass, toClass), pair -> new Pair(sampleMask));
+    }
+
+    @Override
+    public void registryHit(Class<?> clazz) {
+        registryHits.increment();
+    }
+
+    @Override
+    public void registryMiss(Class<?> clazz) {
+        registryMisses.increment();
+    }
+
+    @Override
+    public void registration(Class<?> clazz, long nanos) {
+        registrations.increment();
+        registrationNanos.add(nanos);
+    }
+
+    @Override
+    public void builderDiscovery(Class<?> clazz, long nanos) {
+        builderDiscoveries.increment();
+        builderDiscoveryNanos.add(nanos);
+    }
+
+
+    public Snapshot snapshot() {
+        Map<ClassPair, PairSnapshot> pairSnapshots = new LinkedHashMap<>();
+        pairs.forEach((pair, recorder) -> pairSnapshots.put(pair, recorder.snapshot()));
+        return new Snapshot(Collections.unmodifiableMap(pairSnapshots), registryHits.sum(), registryMisses.sum(),
+                registrations.sum(), registrationNanos.sum(), builderDiscoveries.sum(), builderDiscoveryNanos.sum());
+    }
+
+
+    private static final class Pair implements PairRecorder {
+        private final int sampleMask;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder sampledCalls = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+        private final Histogram histogram = new Histogram();
+        private final LongAdder incompatibleProperties = new LongAdder();
+        private final LongAdder propertyExceptions = new LongAdder();
+
+        Pair(int sampleMask) {
+            this.sampleMask = sampleMask;
+        }
+
+        @Override
+        public boolean called() {
+            calls.increment();
+            return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+        }
+
+        @Override
+        public void timed(long nanos) {
+            sampledCalls.increment();
+            sampledNanos.add(nanos);
+            histogram.record(nanos);
+        }
+
+        @Override
+        public void incompatibleProperty(String fromProp) {
+            incompatibleProperties.increment();
+        }
+
+        @Override
+        public void propertyException(String fromProp, RuntimeException e) {
+            propertyExceptions.increment();
+        }
+
+        PairSnapshot snapshot() {
+            return new PairSnapshot(calls.sum(), sampledCalls.sum(), sampledNanos.sum(), histogram.snapshot(),
+                    incompatibleProperties.sum(), propertyExceptions.sum());
+        }
+    }
+
+
+    public static final class Snapshot {
+        private final Map<ClassPair, PairSnapshot> pairs;
+        private final long registryHits;
+        private final long registryMisses;
+        private final long registrations;
+        private final long registrationNanos;
+        private final long builderDiscoveries;
+        private final long builderDiscoveryNanos;
+
+        Snapshot(Map<ClassPair, PairSnapshot> pairs, long registryHits, long registryMisses, long registrations,
+                 long registrationNanos, long builderDiscoveries, long builderDiscoveryNanos) {
+            this.pairs = pairs;
+            this.registryHits = registryHits;
+            this.registryMisses = registryMisses;
+            this.registrations = registrations;
+            this.registrationNanos = registrationNanos;
+            this.builderDiscoveries = builderDiscoveries;
+            this.builderDiscoveryNanos = builderDiscoveryNanos;
+        }
+
+        public Map<ClassPair, PairSnapshot> getPairs() {
+            return pairs;
+        }
+
+        /**
+         * @return the stats of that pair, null if it was never mapped
+         */
+        public PairSnapshot getPair(Class<?> fromClass, Class<?> toClass) {
+            return pairs.get(ClassPair.of(fromClass, toClass));
+        }
+
+        public long getRegistryHits() {
+            return registryHits;
+        }
+
+        public long getRegistryMisses() {
+            return registryMisses;
+        }
+
+        public long getRegistrations() {
+            return registrations;
+        }
+
+        public long getRegistrationNanos() {
+            return registrationNanos;
+        }
+
+        public long getBuilderDiscoveries() {
+            return builderDiscoveries;
+        }
+
+        public long getBuilderDiscoveryNanos() {
+            return builderDiscoveryNanos;
+        }
+    }
+
+    public static final class PairSnapshot {
+        private final long calls;
+        private final long sampledCalls;
+        private final long sampledNanos;
+        private final long[] histogram;
+        private final long incompatibleProperties;
+        private final long propertyExceptions;
+
+        PairSnapshot(long calls, long sampledCalls, long sampledNanos, long[] histogram, long incompatibleProperties, long propertyExceptions) {
+            this.calls = calls;
+            this.sampledCalls = sampledCalls;
+            this.sampledNanos = sampledNanos;
+            this.histogram = histogram;
+            this.incompatibleProperties = incompatibleProperties;
+            this.propertyExceptions = propertyExceptions;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getSampledCalls() {
+            return sampledCalls;
+        }
+
+        public long getSampledNanos() {
+            return sampledNanos;
+        }
+
+        public long getMeanNanos() {
+            return sampledCalls == 0 ? 0 : sampledNanos / sampledCalls;
+        }
+
+        /**
+         * @return the estimated cumulated mapping time, extrapolated from the sampled calls
+         */
+        public long getEstimatedTotalNanos() {
+            return getMeanNanos() * calls;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the bucket the percentile falls in, so precise within a factor 2
+         */
+        public long getPercentileNanos(double percentile) {
+            return Histogram.percentile(histogram, sampledCalls, percentile);
+        }
+
+        public long getIncompatibleProperties() {
+            return incompatibleProperties;
+        }
+
+        public long getPropertyExceptions() {
+            return propertyExceptions;
+        }
+
+        @Override
+        public String toString() {
+            return "PairSnapshot{calls=" + calls + ", meanNanos=" + getMeanNanos() + ", p99Nanos=" + getPercentileNanos(99)
+                    + ", incompatibleProperties=" + incompatibleProperties + ", propertyExceptions=" + propertyExceptions + '}';
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package eu.nonstatic.mapper;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static eu.nonstatic.mapper.MappingUtils.readProperty;
+import static eu.nonstatic.mapper.MappingUtils.wrap;
+import static eu.nonstatic.mapper.MappingUtils.writeProperty;
+
+/**
+ * How a class (or builder) is read into and written from a {@code Map<String, Object>}, keyed by prop name.
+ * Keys are the registration's interned prop names, so that maps built here share them.
+ */
+final class MapLayout {
+
+    final GettersAndSetters gs;
+    private final String[] getterKeys;
+    private final Method[] getters;
+    private final String[] setterKeys;
+    private final Method[] setters;
+    private final Class<?>[] setterTypes;
+    private final Class<?>[] setterWrappers; // what values must be instances of, primitive types being wrapped
+    private final EnumConversions.Conversion[] stringConversions; // null entries unless the setter takes an enum
+
+
+    private MapLayout(GettersAndSetters gs, EnumConversions enumConversions) {
+        this.gs = gs;
+        this.getterKeys = new String[gs.getterCount()];
+        this.getters = new Method[gs.getterCount()];
+        this.setterKeys = new String[gs.setterCount()];
+        this.setters = new Method[gs.setterCount()];
+        this.setterTypes = new Class<?>[gs.setterCount()];
+        this.setterWrappers = new Class<?>[gs.setterCount()];
+        this.stringConversions = new EnumConversions.Conversion[gs.setterCount()];
+        int g = 0, s = 0;
+        for (int id = 0; id < gs.propCount(); id++) {
+            if(gs.getter(id) != null) {
+                getterKeys[g] = gs.propName(id);
+                getters[g++] = gs.getter(id);
+            }
+            Method setter = gs.setter(id);
+            if(setter != null) {
+                setterKeys[s] = gs.propName(id);
+                setters[s] = setter;
+                setterTypes[s] = setter.getParameterTypes()[0];
+                setterWrappers[s] = wrap(setterTypes[s]);
+                stringConversions[s] = enumConversions.get(String.class, setterTypes[s]);
+                s++;
+            }
+        }
+    }
+
+    static MapLayout compile(GettersAndSetters gs, EnumConversions enumConversions) {
+        return new MapLayout(gs, enumConversions);
+    }
+
+    boolean isCompiledFor(GettersAndSetters gs) {
+        return this.gs == gs;
+    }
+
+    /**
+     * @return a map sized not to be resized when written into
+     */
+    Map<String, Object> newMap() {
+        return new LinkedHashMap<>((int) (getters.length / 0.75f) + 1);
+    }
+
+    /**
+     * Puts every readable prop, null values included, in prop name order
+     */
+    <M extends Map<String, Object>> M write(Object fromInstance, M toMap) {
+        for (int g = 0; g < getters.length; g++) {
+            toMap.put(getterKeys[g], readProperty(fromInstance, getters[g]));
+        }
+        return toMap;
+    }
+
+    /**
+     * Looks up each writable prop in fromMap. Absent keys are skipped, as are values which can't be coerced to the setter's type.
+     * Null values are written, which fails on primitive setters as when mapping beans.
+     */
+    void read(Map<String, ?> fromMap, Object toInstanceOrBuilder) {
+        for (int s = 0; s < setters.length; s++) {
+            Object value = fromMap.get(setterKeys[s]);
+            if(value == null && !fromMap.containsKey(setterKeys[s])) {
+                continue;
+            }
+            if(value != null && !setterWrappers[s].isInstance(value)) {
+                value = coerce(value, s);
+                if(value == null) {
+                    continue;
+                }
+            }
+            writeProperty(value, "Map", setterKeys[s], toInstanceOrBuilder, gs.targetClassName, setters[s], setterTypes[s], setterKeys[s]);
+        }
+    }
+
+    /**
+     * @return value as the setter's type, null if it can't be
+     */
+    private Object coerce(Object value, int s) {
+        if(value instanceof Number) {
+            return coerceNumber((Number) value, setterWrappers[s]);
+        } else if(value instanceof String && stringConversions[s] != null) {
+            return stringConversions[s].convert(value);
+        }
+        return null;
+    }
+
+    /**
+     * JSON-ish numbers (Integer, Long, Double, BigDecimal, BigInteger...) to any numeric type,
+     * integral types only taking integral values within their range
+     * @return null if target isn't numeric or value doesn't fit
+     */
+    static Object coerceNumber(Number value, Class<?> target) {
+        if(target == Double.class) {
+            return value.doubleValue();
+        } else if(target == Float.class) {
+            return value.floatValue();
+        } else if(target == BigDecimal.class) {
+            return value instanceof BigInteger ? new BigDecimal((BigInteger) value) : new BigDecimal(value.toString());
+        }
+
+        long l;
+        if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            l = value.longValue(); // the usual case, not allocating
+        } else {
+            BigInteger integral = toBigInteger(value);
+            if(integral == null) {
+                return null;
+            } else if(target == BigInteger.class) {
+                return integral;
+            } else if(integral.bitLength() >= 64) {
+                return null;
+            }
+            l = integral.longValue();
+        }
+
+        if(target == Long.class) {
+            return l;
+        } else if(target == Integer.class) {
+            return l == (int) l ? (Object) (int) l : null;
+        } else if(target == Short.class) {
+            return l == (short) l ? (Object) (short) l : null;
+        } else if(target == Byte.class) {
+            return l == (byte) l ? (Object) (byte) l : null;
+        } else if(target == BigInteger.class) {
+            return BigInteger.valueOf(l);
+        }
+        return null;
+    }
+
+    /**
+     * @return null if value has a fractional part, or isn't finite
+     */
+    private static BigInteger toBigInteger(Number value) {
+        if(value instanceof BigInteger) {
+            return (BigInteger) value;
+        }
+        try {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+            return decimal.toBigIntegerExact();
+        } catch (NumberFormatException | ArithmeticException e) { // NaN, infinite, fractional or not a number at all
+            return null;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package eu.nonstatic.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hooks for JDK Flight Recorder events. This base class does nothing, {@link JfrMapperEvents} is used instead
+ * when jdk.jfr is available, this way nothing here depends on it.
+ * begin* methods return null when the event isn't being recorded, then end* methods return straight away.
+ */
+class MapperEvents {
+
+    private static final Logger log = LoggerFactory.getLogger(MapperEvents.class);
+
+    private static final String JFR_FQCN = "jdk.jfr.FlightRecorder"; // FQCN to avoid dependency
+    private static final String JFR_EVENTS_FQCN = "eu.nonstatic.mapper.JfrMapperEvents";
+
+    static final MapperEvents EVENTS = load();
+
+    private static MapperEvents load() {
+        try {
+            Class.forName(JFR_FQCN);
+            return (MapperEvents) Class.forName(JFR_EVENTS_FQCN).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.debug("No JFR events: {}", e.toString());
+            return new MapperEvents();
+        }
+    }
+
+
+    Object beginIntrospection() {
+        return null;
+    }
+
+    void endIntrospection(Object event, Class<?> clazz, int propCount) {
+    }
+
+    Object beginBuilderDiscovery() {
+        return null;
+    }
+
+    /**
+     * @param builderMethod null if none was found
+     */
+    void endBuilderDiscovery(Object event, Class<?> clazz, String builderMethod) {
+    }
+
+    Object beginPlanCompilation() {
+        return null;
+    }
+
+    void endPlanCompilation(Object event, Class<?> fromClass, Class<?> toClass, int bindingCount, int explicitCount) {
+    }
+
+    Object beginMapping() {
+        return null;
+    }
+
+    /**
+     * Only committed when slower than the "Slow Mapping" event threshold
+     */
+    void endMapping(Object event, Class<?> fromClass, Class<?> toClass, int propertyCount) {
+    }
+}
@@ -0,0 +1,62 @@
+package eu.nonstatic.mapper;
+
+/**
+ * SPI for mappers to report what they do. Every method is a no-op by default.
+ * When set to {@link #NONE} (the default), mappers don't even call it, so it costs nothing.
+ * See {@link LongAdderMapperMetrics} for a ready to use implementation.
+ */
+public interface MapperMetrics {
+
+    MapperMetrics NONE = new MapperMetrics() {};
+
+
+    /**
+     * Called once per (source class, target or builder class) plan compilation, not per mapping
+     * @return a recorder for that pair, or null not to record it
+     */
+    default PairRecorder pairRecorder(Class<?> fromClass, Class<?> toClass) {
+        return null;
+    }
+
+    default void registryHit(Class<?> clazz) {
+    }
+
+    default void registryMiss(Class<?> clazz) {
+    }
+
+    /**
+     * @param nanos time spent introspecting clazz
+     */
+    default void registration(Class<?> clazz, long nanos) {
+    }
+
+    /**
+     * @param nanos time spent finding and registering clazz's builder
+     */
+    default void builderDiscovery(Class<?> clazz, long nanos) {
+    }
+
+
+    /**
+     * Records the mappings of one (source class, target or builder class) pair. Called on the mapping path, must be cheap.
+     */
+    interface PairRecorder {
+
+        /**
+         * @return true for the mapping which just started to be timed, see {@link #timed(long)}
+         */
+        boolean called();
+
+        void timed(long nanos);
+
+        /**
+         * A getter's value couldn't be assigned to the matching setter, so the prop was skipped
+         */
+        void incompatibleProperty(String fromProp);
+
+        /**
+         * Mapping fromProp raised e, which is propagated right after this call
+         */
+        void propertyException(String fromProp, RuntimeException e);
+    }
+}
@@ -0,0 +1,463 @@
+package eu.nonstatic.mapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static eu.nonstatic.mapper.MapperEvents.EVENTS;
+import static eu.nonstatic.mapper.MappingUtils.isAssignable;
+import static eu.nonstatic.mapper.MappingUtils.mapProperty;
+import static eu.nonstatic.mapper.MappingUtils.readProperty;
+import static eu.nonstatic.mapper.MappingUtils.wrap;
+import static eu.nonstatic.mapper.MappingUtils.writeProperty;
+
+/**
+ * This class holds, once and for all, which getter of a source class feeds which setter of a target class (or builder).
+ * Plans are compiled lazily then cached by their {@link AutoMapper}.
+ */
+final class MappingPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(MappingPlan.class);
+    private static final Object INCOMPATIBLE = new Object(); // source value which wouldn't be written
+
+    static final int MAX_CACHED_PROJECTIONS = 64; // beyond that, projections are probably built on the fly and aren't worth caching
+
+    final GettersAndSetters gsFrom;
+    final GettersAndSetters gsTo;
+    final FromToMapper.ToMappers explicitMappings; // null when auto only
+    final Binding[] bindings;
+    private final MapperMetrics.PairRecorder recorder; // null when not recorded
+    private final PropertyProfiler.PairProfile profile; // null when not profiled
+    private final ConcurrentHashMap<Projection, MappingPlan> projections = new ConcurrentHashMap<>(); // reduced plans, they go away along with this one
+    private Map<Deduplication, MappingPlan> deduplications; // weak keys, deduplications often being per batch; lazy, guarded by this
+    private volatile Reset reset; // lazily, only plans of reused targets need it
+
+
+    private MappingPlan(GettersAndSetters gsFrom, GettersAndSetters gsTo, FromToMapper.ToMappers explicitMappings, Binding[] bindings,
+                        MapperMetrics metrics, PropertyProfiler profiler) {
+        this.gsFrom = gsFrom;
+        this.gsTo = gsTo;
+        this.explicitMappings = explicitMappings;
+        this.bindings = bindings;
+        this.recorder = metrics != null ? metrics.pairRecorder(gsFrom.targetClass, gsTo.targetClass) : null;
+        this.profile = profiler != null ? profiler.profile(gsFrom.targetClass, gsTo.targetClass, bindings) : null;
+    }
+
+    /**
+     * Matches getters and setters by prop name, then adds the explicit mappings if any.
+     * Source props which are explicitly mapped aren't auto mapped.
+     * @param explicitMappings null or the explicit mappings registered for (source class, target class),
+     *                         their setters being looked up again in gsTo, which may be the target class' builder
+     * @param enumConversions where enum props of different types find their conversion tables
+     * @param metrics null when disabled
+     * @param profiler null when disabled
+     */
+    static MappingPlan compile(GettersAndSetters gsFrom, GettersAndSetters gsTo, FromToMapper.ToMappers explicitMappings,
+                               EnumConversions enumConversions, MapperMetrics metrics, PropertyProfiler profiler) {
+        return compile(gsFrom, gsTo, explicitMappings, null, enumConversions, metrics, profiler);
+    }
+
+    /**
+     * Same as {@link #compile(GettersAndSetters, GettersAndSetters, FromToMapper.ToMappers, EnumConversions, MapperMetrics, PropertyProfiler)},
+     * reusing the bindings of superPlan, compiled for a superclass of gsFrom's and the same gsTo, for the props that superclass has getters for.
+     * Getters being called virtually, the superclass' ones read overriding getters too. Only the subclass' own props are bound anew.
+     * @param superPlan null to bind every prop
+     */
+    static MappingPlan compile(GettersAndSetters gsFrom, GettersAndSetters gsTo, FromToMapper.ToMappers explicitMappings, MappingPlan superPlan,
+                               EnumConversions enumConversions, MapperMetrics metrics, PropertyProfiler profiler) {
+        Object event = EVENTS.beginPlanCompilation();
+        int explicitCount = 0;
+        List<Binding> bindings = new ArrayList<>(gsFrom.getterCount);
+        Binding[] superBindings = superPlan != null ? superPlan.bindings : null; // sorted by prop name, as the getters
+        int superIndex = 0;
+        for (int fromId = 0; fromId < gsFrom.getters.length; fromId++) {
+            Method getter = gsFrom.getters[fromId];
+            if(getter != null) {
+                String propertyName = gsFrom.props[fromId];
+                if(explicitMappings != null && explicitMappings.get(propertyName) != null) {
+                    continue; // explicitly mapped, see below
+                }
+                if(superPlan != null && superPlan.gsFrom.getter(propertyName) != null) { // inherited, already bound or not
+                    while(superIndex < superBindings.length && superBindings[superIndex].fromProp.compareTo(propertyName) < 0) {
+                        superIndex++;
+                    }
+                    if(superIndex < superBindings.length && superBindings[superIndex].fromProp.equals(propertyName)) {
+                        bindings.add(superBindings[superIndex++]);
+                    }
+                    continue;
+                }
+                int toId = gsTo.propId(propertyName);
+                Method setter = toId >= 0 ? gsTo.setter(toId) : null;
+                if (setter != null) {
+                    bindings.add(new Binding(propertyName, getter, toId, propertyName, setter, false, enumConversions));
+                }
+            }
+        }
+
+        if(explicitMappings != null) {
+            for (FromToMapper.MappingDescriptor descriptor : explicitMappings) {
+                String fromProp = descriptor.getFromPropName(), toProp = descriptor.getToPropName();
+                int toId = gsTo.propId(toProp);
+                Method getter = gsFrom.getter(fromProp), setter = toId >= 0 ? gsTo.setter(toId) : null;
+                if(getter != null && setter != null) {
+                    bindings.add(new Binding(fromProp, getter, toId, toProp, setter, true, enumConversions));
+                    explicitCount++;
+                } else {
+                    log.debug("Can't map {}.{} into {}.{}", gsFrom.targetClassName, fromProp, gsTo.targetClassName, toProp);
+                }
+            }
+        }
+        EVENTS.endPlanCompilation(event, gsFrom.targetClass, gsTo.targetClass, bindings.size(), explicitCount);
+        MappingPlan plan = new MappingPlan(gsFrom, gsTo, explicitMappings, bindings.toArray(new Binding[0]), metrics, profiler);
+        if(log.isDebugEnabled()) { // once per plan, rather than per prop and per mapping
+            log.debug("Compiled {}", plan.explain(null));
+        }
+        return plan;
+    }
+
+    /**
+     * @return true if this plan was compiled against those very registrations and explicit mappings
+     */
+    boolean isCompiledFor(GettersAndSetters gsFrom, GettersAndSetters gsTo, FromToMapper.ToMappers explicitMappings) {
+        return this.gsFrom == gsFrom && this.gsTo == gsTo && this.explicitMappings == explicitMappings;
+    }
+
+    /**
+     * @param excludedProps source props that would be excluded
+     */
+    PlanExplanation explain(Collection<String> excludedProps) {
+        return new PlanExplanation(this, excludedProps);
+    }
+
+    /**
+     * @return the reduced plan only holding the bindings, explicit ones included, of the projected source props
+     * @throws IllegalArgumentException if a projected prop has no getter
+     */
+    MappingPlan project(Projection projection, MapperMetrics metrics, PropertyProfiler profiler) throws IllegalArgumentException {
+        MappingPlan projected = projections.get(projection);
+        if(projected == null) {
+            gsFrom.checkGettersContain(projection.getProps());
+            List<Binding> projectedBindings = new ArrayList<>(projection.getProps().size());
+            for (Binding binding : bindings) {
+                if(projection.includes(binding.fromProp)) {
+                    projectedBindings.add(binding);
+                }
+            }
+            projected = new MappingPlan(gsFrom, gsTo, explicitMappings, projectedBindings.toArray(new Binding[0]), metrics, profiler);
+            if(projections.size() < MAX_CACHED_PROJECTIONS) {
+                MappingPlan raced = projections.putIfAbsent(projection, projected);
+                if(raced != null) {
+                    projected = raced;
+                }
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * @return a plan interning the values of the deduplicated source props in their tables, the other bindings being shared with this one.
+     * It is built once per deduplication, polymorphic batches switching back and forth between source classes.
+     * @throws IllegalArgumentException if a deduplicated prop has no getter
+     */
+    synchronized MappingPlan deduplicate(Deduplication deduplication, MapperMetrics metrics, PropertyProfiler profiler) throws IllegalArgumentException {
+        if(deduplications == null) {
+            deduplications = new WeakHashMap<>(4); // by identity, Deduplication not overriding equals
+        }
+        MappingPlan deduplicated = deduplications.get(deduplication);
+        if(deduplicated == null) {
+            gsFrom.checkGettersContain(deduplication.getProps());
+            Binding[] deduplicatedBindings = bindings.clone();
+            for (int i = 0; i < deduplicatedBindings.length; i++) {
+                InternTable table = deduplication.tables.get(deduplicatedBindings[i].fromProp);
+                if(table != null) {
+                    deduplicatedBindings[i] = new Binding(deduplicatedBindings[i], table);
+                }
+            }
+            deduplicated = new MappingPlan(gsFrom, gsTo, explicitMappings, deduplicatedBindings, metrics, profiler);
+            deduplications.put(deduplication, deduplicated); // the plan holds the tables, not the deduplication
+        }
+        return deduplicated;
+    }
+
+    /**
+     * @param excludedProps source props not to auto map, explicit mappings still apply
+     */
+    <F, T> void apply(F fromInstance, T toInstanceOrBuilder, Collection<String> excludedProps) {
+        Object event = EVENTS.beginMapping();
+        MapperMetrics.PairRecorder recorder = this.recorder;
+        PropertyProfiler.PairProfile sampledProfile = profile != null && profile.sample() ? profile : null;
+        if(recorder != null && recorder.called()) {
+            long start = System.nanoTime();
+            applyBindings(fromInstance, toInstanceOrBuilder, excludedProps, recorder, sampledProfile);
+            recorder.timed(System.nanoTime() - start);
+        } else {
+            applyBindings(fromInstance, toInstanceOrBuilder, excludedProps, recorder, sampledProfile);
+        }
+        EVENTS.endMapping(event, gsFrom.targetClass, gsTo.targetClass, bindings.length);
+    }
+
+    private <F, T> void applyBindings(F fromInstance, T toInstanceOrBuilder, Collection<String> excludedProps,
+                                      MapperMetrics.PairRecorder recorder, PropertyProfiler.PairProfile profile) {
+        boolean excluding = excludedProps != null && !excludedProps.isEmpty();
+        Binding[] bindings = this.bindings;
+        for (int i = 0; i < bindings.length; i++) {
+            Binding binding = bindings[i];
+            if(excluding && !binding.explicit && excludedProps.contains(binding.fromProp)) {
+                continue;
+            }
+            if(profile != null) {
+                long start = System.nanoTime();
+                applyBinding(binding, fromInstance, toInstanceOrBuilder, recorder);
+                profile.record(i, System.nanoTime() - start);
+            } else {
+                applyBinding(binding, fromInstance, toInstanceOrBuilder, recorder);
+            }
+        }
+    }
+
+    private <F, T> void applyBinding(Binding binding, F fromInstance, T toInstanceOrBuilder, MapperMetrics.PairRecorder recorder) {
+        try {
+            boolean mapped;
+            if(binding.conversion == null && binding.interner == null) {
+                mapped = mapProperty(fromInstance, gsFrom.targetClassName, binding.getter, binding.fromProp,
+                        toInstanceOrBuilder, gsTo.targetClassName, binding.setter, binding.setterType, binding.toProp);
+            } else {
+                mapped = mapConverted(binding, fromInstance, toInstanceOrBuilder);
+            }
+            if(!mapped && recorder != null) {
+                recorder.incompatibleProperty(binding.fromProp);
+            }
+        } catch (RuntimeException e) {
+            if(recorder != null) {
+                recorder.propertyException(binding.fromProp, e);
+            }
+            throw e;
+        }
+    }
+
+
+    /**
+     * Converts then interns the source value, as the binding requires
+     * @return false if the source value has no counterpart in the target enum or is incompatible, hence nothing was mapped
+     */
+    private boolean mapConverted(Binding binding, Object fromInstance, Object toInstanceOrBuilder) {
+        Object value = readProperty(fromInstance, binding.getter);
+        Object converted;
+        if(binding.conversion != null) {
+            converted = binding.conversion.convert(value);
+            if(value != null && converted == null) {
+                return false;
+            }
+        } else if(isAssignable(value, binding.getter, binding.setterType)) {
+            converted = value;
+        } else {
+            return false;
+        }
+        if(binding.interner != null) {
+            converted = binding.interner.intern(converted);
+        }
+        writeProperty(converted, gsFrom.targetClassName, binding.fromProp,
+                toInstanceOrBuilder, gsTo.targetClassName, binding.setter, binding.setterType, binding.toProp);
+        return true;
+    }
+
+
+    /**
+     * Only calls the setters of the props which value differs from the target's current one, when the target has a getter for it.
+     * @param skipNulls true not to write null source values (patch semantics)
+     */
+    <F, T> ChangedProps applyChanged(F fromInstance, T toInstance, boolean skipNulls) {
+        Object event = EVENTS.beginMapping();
+        BitSet changed = new BitSet(gsTo.propCount());
+        for (Binding binding : bindings) {
+            try {
+                Object value = readProperty(fromInstance, binding.getter);
+                if(value == null && skipNulls) {
+                    continue;
+                }
+                value = targetValue(binding, value);
+                if(value == INCOMPATIBLE) {
+                    if(recorder != null) {
+                        recorder.incompatibleProperty(binding.fromProp);
+                    }
+                    continue;
+                }
+                Method toGetter = gsTo.getter(binding.toId);
+                if(toGetter != null && Objects.equals(value, readProperty(toInstance, toGetter))) {
+                    continue;
+                }
+                writeProperty(value, gsFrom.targetClassName, binding.fromProp,
+                        toInstance, gsTo.targetClassName, binding.setter, binding.setterType, binding.toProp);
+                changed.set(binding.toId);
+            } catch (RuntimeException e) {
+                if(recorder != null) {
+                    recorder.propertyException(binding.fromProp, e);
+                }
+                throw e;
+            }
+        }
+        EVENTS.endMapping(event, gsFrom.targetClass, gsTo.targetClass, bindings.length);
+        return new ChangedProps(gsTo, changed);
+    }
+
+    /**
+     * @return value as written to the target, converted if need be, or INCOMPATIBLE if it can't be written, hence isn't
+     */
+    private static Object targetValue(Binding binding, Object value) {
+        if(binding.conversion == null) {
+            return isAssignable(value, binding.getter, binding.setterType) ? value : INCOMPATIBLE;
+        }
+        Object converted = binding.conversion.convert(value);
+        return value == null || converted != null ? converted : INCOMPATIBLE;
+    }
+
+    /**
+     * Compares the values of the mapped props, as long as the target also has a getter for them.
+     * Values which wouldn't be written (not assignable, or without enum counterpart) aren't compared.
+     * Apart from boxing primitive values, this doesn't allocate.
+     */
+    boolean equalsOn(Object fromInstance, Object toInstance) {
+        for (Binding binding : bindings) {
+            Method toGetter = gsTo.getter(binding.toId);
+            if(toGetter != null) {
+                Object value = targetValue(binding, readProperty(fromInstance, binding.getter));
+                if(value != INCOMPATIBLE && !Objects.equals(value, readProperty(toInstance, toGetter))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of the source values of the mapped props which target also has a getter, as converted for the target,
+     * consistent with {@link #equalsOn}
+     */
+    int hashOn(Object fromInstance) {
+        int hash = 1;
+        for (Binding binding : bindings) {
+            if(gsTo.getter(binding.toId) != null) {
+                Object value = targetValue(binding, readProperty(fromInstance, binding.getter));
+                if(value != INCOMPATIBLE) {
+                    hash = 31 * hash + Objects.hashCode(value);
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the target props which value differs from the source one, ie: those {@link #applyChanged} would write
+     */
+    ChangedProps diff(Object fromInstance, Object toInstance) {
+        BitSet different = new BitSet(gsTo.propCount());
+        for (Binding binding : bindings) {
+            Method toGetter = gsTo.getter(binding.toId);
+            if(toGetter != null) {
+                Object value = targetValue(binding, readProperty(fromInstance, binding.getter));
+                if(value != INCOMPATIBLE && !Objects.equals(value, readProperty(toInstance, toGetter))) {
+                    different.set(binding.toId);
+                }
+            }
+        }
+        return new ChangedProps(gsTo, different);
+    }
+
+    /**
+     * Sets the target props this plan may not write back to their default values (null, 0, false),
+     * so that a reused target doesn't keep values from a previous mapping.
+     * Props which bindings are statically incompatible are reset too, since their values may be skipped.
+     */
+    void reset(Object toInstance) {
+        Reset reset = this.reset;
+        if(reset == null) {
+            this.reset = reset = new Reset(this);
+        }
+        for (int i = 0; i < reset.setters.length; i++) {
+            String toProp = gsTo.propName(reset.toIds[i]);
+            writeProperty(reset.values[i], "default", toProp, toInstance, gsTo.targetClassName, reset.setters[i], reset.types[i], toProp);
+        }
+    }
+
+    private static final class Reset {
+        final int[] toIds;
+        final Method[] setters;
+        final Class<?>[] types;
+        final Object[] values;
+
+        Reset(MappingPlan plan) {
+            GettersAndSetters gsTo = plan.gsTo;
+            boolean[] alwaysWritten = new boolean[gsTo.propCount()];
+            for (Binding binding : plan.bindings) {
+                alwaysWritten[binding.toId] = wrap(binding.setterType).isAssignableFrom(wrap(binding.getter.getReturnType()));
+            }
+            List<Integer> ids = new ArrayList<>();
+            for (int toId = 0; toId < alwaysWritten.length; toId++) {
+                if(!alwaysWritten[toId] && gsTo.setter(toId) != null) {
+                    ids.add(toId);
+                }
+            }
+            this.toIds = new int[ids.size()];
+            this.setters = new Method[ids.size()];
+            this.types = new Class<?>[ids.size()];
+            this.values = new Object[ids.size()];
+            for (int i = 0; i < toIds.length; i++) {
+                toIds[i] = ids.get(i);
+                setters[i] = gsTo.setter(toIds[i]);
+                types[i] = setters[i].getParameterTypes()[0];
+                values[i] = types[i].isPrimitive() ? Array.get(Array.newInstance(types[i], 1), 0) : null; // 0, false...
+            }
+        }
+    }
+
+    /**
+     * One getter => setter transfer. The source side is only known by prop name and getter,
+     * so that bindings can be shared by the plans of a class hierarchy, see {@link #compile}
+     */
+    static final class Binding {
+        final String fromProp;
+        final Method getter;
+        final int toId;
+        final String toProp;
+        final Method setter;
+        final Class<?> setterType;
+        final boolean explicit;
+        final EnumConversions.Conversion conversion; // null when values are written as is
+        final InternTable interner; // null when values aren't deduplicated
+
+        Binding(String fromProp, Method getter, int toId, String toProp, Method setter, boolean explicit,
+                EnumConversions enumConversions) {
+            this.fromProp = fromProp;
+            this.getter = getter;
+            this.toId = toId;
+            this.toProp = toProp;
+            this.setter = setter;
+            this.setterType = setter.getParameterTypes()[0];
+            this.explicit = explicit;
+            this.conversion = enumConversions.get(getter.getReturnType(), setterType);
+            this.interner = null;
+        }
+
+        Binding(Binding binding, InternTable interner) {
+            this.fromProp = binding.fromProp;
+            this.getter = binding.getter;
+            this.toId = binding.toId;
+            this.toProp = binding.toProp;
+            this.setter = binding.setter;
+            this.setterType = binding.setterType;
+            this.explicit = binding.explicit;
+            this.conversion = binding.conversion;
+            this.interner = interner;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package eu.nonstatic.mapper;
+
+/**
+ * A call site mapping sources of various runtime classes (eg: the subclasses of a base type) to new instances of one target class.
+ * It remembers the plans of the last two source classes it saw, so that mono and bimorphic sites skip the registry
+ * and plan cache lookups altogether. Beyond two classes, it goes megamorphic and looks plans up on each call as usual.
+ * Plans of subclasses share their superclass' bindings either way, see {@link AutoMapper#site(Class)}.
+ * Sites are thread-safe, keep one per call site, eg: in a constant.
+ */
+public final class MappingSite<T> {
+
+    private final AutoMapper mapper;
+    private final Class<T> toClass;
+    // racy but safe: entries are immutable, a lost update only costs a lookup
+    private Entry first;
+    private Entry second;
+    private boolean megamorphic;
+
+
+    MappingSite(AutoMapper mapper, Class<T> toClass) {
+        this.mapper = mapper;
+        this.toClass = toClass;
+    }
+
+
+    public Class<T> getToClass() {
+        return toClass;
+    }
+
+    /**
+     * @return true once more than two source classes went through this site
+     */
+    public boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    /**
+     * @return a new instance of toClass, or null if fromInstance is null
+     */
+    public T map(Object fromInstance) {
+        if(fromInstance == null) {
+            return null;
+        }
+        T toInstance = AutoMapper.newInstance(toClass);
+        plan(fromInstance.getClass()).apply(fromInstance, toInstance, null);
+        return toInstance;
+    }
+
+    private MappingPlan plan(Class<?> fromClass) {
+        int epoch = mapper.planEpoch.get(); // before any lookup, so that an entry never outlives a change it didn't see
+        Entry entry = first;
+        if(entry != null && entry.fromClass == fromClass && entry.epoch == epoch) {
+            return entry.plan;
+        }
+        entry = second;
+        if(entry != null && entry.fromClass == fromClass && entry.epoch == epoch) {
+            return entry.plan;
+        }
+
+        MappingPlan plan = mapper.getPlan(mapper.getRegistration(fromClass), mapper.getRegistration(toClass));
+        if(!megamorphic) {
+            Entry missed = first;
+            if(missed != null && missed.epoch == epoch && missed.fromClass != fromClass
+                    && second != null && second.epoch == epoch && second.fromClass != fromClass) {
+                megamorphic = true; // a third class, caching would only thrash
+                first = second = null;
+            } else {
+                second = missed != null && missed.fromClass != fromClass ? missed : second;
+                first = new Entry(fromClass, plan, epoch);
+            }
+        }
+        return plan;
+    }
+
+    private static final class Entry {
+        final Class<?> fromClass;
+        final MappingPlan plan;
+        final int epoch;
+
+        Entry(Class<?> fromClass, MappingPlan plan, int epoch) {
+            this.fromClass = fromClass;
+            this.plan = plan;
+            this.epoch = epoch;
+        }
+    }
+}
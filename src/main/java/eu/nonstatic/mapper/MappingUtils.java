@@ -1,8 +1,5 @@
 package eu.nonstatic.mapper;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -10,8 +7,6 @@ import java.util.Map;
 
 final class MappingUtils {
 
-    private static final Logger log = LoggerFactory.getLogger(MappingUtils.class);
-
     private MappingUtils() {
         // nada
     }
@@ -27,6 +22,8 @@ final class MappingUtils {
         put(char.class, Character.class);
     }};
 
+    private static final Object[] NO_ARGS = new Object[0];
+
     private static final Map<Class<?>, Class<?>> primitiveToWrapper = new HashMap() {{
         put(byte.class, Byte.class);
         put(short.class, Short.class);
@@ -68,31 +65,54 @@ final class MappingUtils {
     }
 
 
-    static <F, T> void mapProperty(F fromInstance, String fromClassName, Method getter, String getterPropName,
-                                   T toInstance, String toClassName, Method setter, String setterPropName) {
+    static Class<?> wrap(Class<?> clazz) {
+        return clazz.isPrimitive() ? primitiveToWrapper.get(clazz) : clazz;
+    }
+
+
+    /**
+     * Nothing is logged here, this is called for every prop of every mapping. See {@link PlanExplanation} instead.
+     * @param setterParamType setter's parameter type, given not to clone the setter's parameter types on each call
+     * @return false if the getter's value can't be assigned to the setter, hence nothing was mapped
+     */
+    static <F, T> boolean mapProperty(F fromInstance, String fromClassName, Method getter, String getterPropName,
+                                   T toInstance, String toClassName, Method setter, Class<?> setterParamType, String setterPropName) {
+        Object value = readProperty(fromInstance, getter);
+        if (isAssignable(value, getter, setterParamType)) {
+            writeProperty(value, fromClassName, getterPropName, toInstance, toClassName, setter, setterParamType, setterPropName);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    static Object readProperty(Object instance, Method getter) {
+        try {
+            return getter.invoke(instance, NO_ARGS); // not letting varargs allocate an empty array on each call
+        } catch (InvocationTargetException e) {
+            throw new IllegalArgumentException(e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static boolean isAssignable(Object value, Method getter, Class<?> setterParamType) {
+        // taking the most specialized; eg: Number getProp() where prop's value is an actual Integer.
+        Class<?> getterReturn = value != null ? value.getClass() : getter.getReturnType();
+        return /* TODO useless? !usingSetters || */ isAssignable(getterReturn, setterParamType); // happy that primitives do auto boxing
+    }
+
+    static void writeProperty(Object value, String fromClassName, String getterPropName,
+                              Object toInstance, String toClassName, Method setter, Class<?> setterParamType, String setterPropName) {
         try {
-            Object value = getter.invoke(fromInstance);
-            // taking the most specialized; eg: Number getProp() where prop's value is an actual Integer.
-            Class<?> getterReturn = value != null ? value.getClass() : getter.getReturnType();
-            Class<?> setterParamType = setter.getParameterTypes()[0];
-            if (/* TODO useless? !usingSetters || */ isAssignable(getterReturn, setterParamType)) {
-                // happy that primitives do auto boxing
-                log.debug("Mapping from {}.{} to {}.{} with {}", fromClassName, getterPropName, toClassName, setterPropName, value);
-                try {
-                    //TODO coertion
-                    setter.invoke(toInstance, value); // also happy auto unboxing takes place when needed
-                } catch (IllegalArgumentException e) { // most probably unboxing on null
-                    if(value == null && setterParamType.isPrimitive()) {
-                        throw new IllegalArgumentException("Can't unbox null value of " + fromClassName + '.' + getterPropName
-                                + " to " + toClassName + '.' + setterPropName, e);
-                    } else {
-                        throw e;
-                    }
-                }
+            //TODO coertion
+            setter.invoke(toInstance, value); // also happy auto unboxing takes place when needed
+        } catch (IllegalArgumentException e) { // most probably unboxing on null
+            if(value == null && setterParamType.isPrimitive()) {
+                throw new IllegalArgumentException("Can't unbox null value of " + fromClassName + '.' + getterPropName
+                        + " to " + toClassName + '.' + setterPropName, e);
             } else {
-                log.debug("Incompatible mapping from {} {}#{} to {}#{}({})",
-                        getterReturn.getSimpleName(), fromClassName, getter.getName(),
-                        toClassName, setter.getName(), setterParamType.getSimpleName());
+                throw e;
             }
         } catch (InvocationTargetException e) {
             throw new IllegalArgumentException(e);
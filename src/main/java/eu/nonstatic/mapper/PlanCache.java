@@ -0,0 +1,58 @@
+package eu.nonstatic.mapper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Compiled plans by source class then target (or builder, or view interface) class.
+ * Lookups don't allocate, validity is left to the callers, see {@link MappingPlan#isCompiledFor}
+ */
+final class PlanCache<P> {
+
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, P>> plans = new ConcurrentHashMap<>();
+
+
+    P get(Class<?> fromClass, Class<?> toClass) {
+        ConcurrentHashMap<Class<?>, P> toPlans = plans.get(fromClass);
+        return toPlans != null ? toPlans.get(toClass) : null;
+    }
+
+    void put(Class<?> fromClass, Class<?> toClass, P plan) {
+        ConcurrentHashMap<Class<?>, P> toPlans = plans.get(fromClass);
+        if(toPlans == null) {
+            ConcurrentHashMap<Class<?>, P> newToPlans = new ConcurrentHashMap<>();
+            toPlans = plans.putIfAbsent(fromClass, newToPlans);
+            if(toPlans == null) {
+                toPlans = newToPlans;
+            }
+        }
+        toPlans.put(toClass, plan);
+    }
+
+    void remove(Class<?> fromClass, Class<?> toClass) {
+        ConcurrentHashMap<Class<?>, P> toPlans = plans.get(fromClass);
+        if(toPlans != null) {
+            toPlans.remove(toClass);
+        }
+    }
+
+    /**
+     * Drops every plan involving clazz, either as a source or a target
+     */
+    void drop(Class<?> clazz) {
+        plans.remove(clazz);
+        for (ConcurrentHashMap<Class<?>, P> toPlans : plans.values()) {
+            toPlans.remove(clazz);
+        }
+    }
+
+    void forEach(Consumer<? super P> action) {
+        for (ConcurrentHashMap<Class<?>, P> toPlans : plans.values()) {
+            toPlans.values().forEach(action);
+        }
+    }
+
+    void clear() {
+        plans.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package eu.nonstatic.mapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static eu.nonstatic.mapper.MappingUtils.wrap;
+
+/**
+ * What a mapping plan does with every prop of a (source class, target class) pair, as judged from the declared types.
+ * Explicitly mapped props are listed as "fromProp -> toProp", auto mapped ones by their name.
+ * <ul>
+ *     <li>mapped: the getter's return type is assignable to the setter's parameter type</li>
+ *     <li>coerced: same as above, with boxing or unboxing, or converted between enums or enums and Strings</li>
+ *     <li>incompatible: not statically assignable, the actual value's class is checked on each mapping (eg: Number to Integer)</li>
+ *     <li>excluded: auto mapped props that would be skipped given the excluded props</li>
+ *     <li>unmatched getters: source props no setter was found for</li>
+ *     <li>unmatched setters: target props nothing is mapped to</li>
+ * </ul>
+ */
+public final class PlanExplanation {
+
+    private final Class<?> fromClass;
+    private final Class<?> toClass;
+    private final List<String> mapped = new ArrayList<>();
+    private final List<String> coerced = new ArrayList<>();
+    private final List<String> incompatible = new ArrayList<>();
+    private final List<String> excluded = new ArrayList<>();
+    private final List<String> unmatchedGetters = new ArrayList<>();
+    private final List<String> unmatchedSetters = new ArrayList<>();
+
+
+    PlanExplanation(MappingPlan plan, Collection<String> excludedProps) {
+        GettersAndSetters gsFrom = plan.gsFrom, gsTo = plan.gsTo;
+        this.fromClass = gsFrom.targetClass;
+        this.toClass = gsTo.targetClass;
+
+        boolean[] boundGetters = new boolean[gsFrom.propCount()];
+        boolean[] boundSetters = new boolean[gsTo.propCount()];
+        for (MappingPlan.Binding binding : plan.bindings) {
+            String name = binding.explicit ? binding.fromProp + " -> " + binding.toProp : binding.fromProp;
+            boundGetters[gsFrom.propId(binding.fromProp)] = true;
+            if(!binding.explicit && excludedProps != null && excludedProps.contains(binding.fromProp)) {
+                excluded.add(name);
+                continue;
+            }
+            boundSetters[binding.toId] = true;
+            Class<?> getterType = binding.getter.getReturnType(), setterType = binding.setterType;
+            if(setterType.isAssignableFrom(getterType)) {
+                mapped.add(name);
+            } else if(wrap(setterType).isAssignableFrom(wrap(getterType)) || binding.conversion != null) {
+                coerced.add(name);
+            } else {
+                incompatible.add(name);
+            }
+        }
+
+        for (int fromId = 0; fromId < boundGetters.length; fromId++) {
+            if(!boundGetters[fromId] && gsFrom.getter(fromId) != null) {
+                unmatchedGetters.add(gsFrom.propName(fromId));
+            }
+        }
+        for (int toId = 0; toId < boundSetters.length; toId++) {
+            if(!boundSetters[toId] && gsTo.setter(toId) != null) {
+                unmatchedSetters.add(gsTo.propName(toId));
+            }
+        }
+    }
+
+
+    public Class<?> getFromClass() {
+        return fromClass;
+    }
+
+    public Class<?> getToClass() {
+        return toClass;
+    }
+
+    public List<String> getMapped() {
+        return Collections.unmodifiableList(mapped);
+    }
+
+    public List<String> getCoerced() {
+        return Collections.unmodifiableList(coerced);
+    }
+
+    public List<String> getIncompatible() {
+        return Collections.unmodifiableList(incompatible);
+    }
+
+    public List<String> getExcluded() {
+        return Collections.unmodifiableList(excluded);
+    }
+
+    public List<String> getUnmatchedGetters() {
+        return Collections.unmodifiableList(unmatchedGetters);
+    }
+
+    public List<String> getUnmatchedSetters() {
+        return Collections.unmodifiableList(unmatchedSetters);
+    }
+
+    @Override
+    public String toString() {
+        return "plan " + fromClass.getName() + " -> " + toClass.getName() + ':'
+                + "\n  mapped: " + mapped
+                + "\n  coerced: " + coerced
+                + "\n  incompatible (checked per value): " + incompatible
+                + "\n  excluded: " + excluded
+                + "\n  unmatched getters: " + unmatchedGetters
+                + "\n  unmatched setters: " + unmatchedSetters;
+    }
+}
@@ -0,0 +1,64 @@
+package eu.nonstatic.mapper;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The only source props to map, as opposed to excluded props.
+ * Each distinct projection gets its own reduced plan, so that the getters of other props aren't even called.
+ * Projections are immutable, better create them once and keep them in constants.
+ */
+public final class Projection {
+
+    private final String[] props; // sorted, distinct
+    private final List<String> propList;
+    private final int hash;
+
+
+    private Projection(Collection<String> props) {
+        if(props.isEmpty()) {
+            throw new IllegalArgumentException("A projection needs at least one prop");
+        }
+        this.props = new TreeSet<>(props).toArray(new String[0]);
+        this.propList = Collections.unmodifiableList(Arrays.asList(this.props));
+        this.hash = Arrays.hashCode(this.props);
+    }
+
+    public static Projection of(String... props) {
+        return new Projection(Arrays.asList(props));
+    }
+
+    public static Projection of(Collection<String> props) {
+        return new Projection(props);
+    }
+
+
+    public List<String> getProps() {
+        return propList;
+    }
+
+    boolean includes(String prop) {
+        return Arrays.binarySearch(props, prop) >= 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        Projection that = (Projection) o;
+        return hash == that.hash && Arrays.equals(props, that.props);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "Projection" + propList;
+    }
+}
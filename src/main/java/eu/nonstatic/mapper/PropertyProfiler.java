@@ -0,0 +1,180 @@
+package eu.nonstatic.mapper;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in profiler timing each property transfer (getter call, checks and setter call) of 1 mapping in sampleRate,
+ * to find out which props are worth excluding or projecting away, eg: getters doing real work.
+ * Set it on a mapper with {@link AutoMapper#setPropertyProfiler(PropertyProfiler)}.
+ */
+public final class PropertyProfiler {
+
+    private static final int DEFAULT_SAMPLE_RATE = 64;
+    private static final String ARROW = " -> ";
+
+    private final int sampleMask;
+    private final ConcurrentHashMap<ClassPair, ConcurrentHashMap<String, PropertyStats>> pairs = new ConcurrentHashMap<>();
+
+
+    public PropertyProfiler() {
+        this(DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate 1 mapping out of sampleRate is profiled, rounded up to a power of 2. 1 to profile them all.
+     */
+    public PropertyProfiler(int sampleRate) {
+        if(sampleRate < 1) {
+            throw new IllegalArgumentException("Sample rate must be at least 1");
+        }
+        int powerOf2 = sampleRate == 1 ? 1 : Integer.highestOneBit(sampleRate - 1) << 1;
+        this.sampleMask = powerOf2 - 1;
+    }
+
+
+    /**
+     * Called on plan compilation. Stats survive plan recompilations since they're kept by prop.
+     */
+    PairProfile profile(Class<?> fromClass, Class<?> toClass, MappingPlan.Binding[] bindings) {
+        ConcurrentHashMap<String, PropertyStats> pairStats = pairs.computeIfAbsent(ClassPair.of(fromClass, toClass), pair -> new ConcurrentHashMap<>());
+        PropertyStats[] stats = new PropertyStats[bindings.length];
+        for (int i = 0; i < bindings.length; i++) {
+            MappingPlan.Binding binding = bindings[i];
+            stats[i] = pairStats.computeIfAbsent(binding.fromProp + ARROW + binding.toProp,
+                    key -> new PropertyStats(binding.fromProp, binding.toProp));
+        }
+        return new PairProfile(sampleMask, stats);
+    }
+
+
+    /**
+     * @return the k most expensive props of the given pair, by mean transfer time, most expensive first
+     */
+    public List<PropertyCost> topProperties(Class<?> fromClass, Class<?> toClass, int k) {
+        ConcurrentHashMap<String, PropertyStats> pairStats = pairs.get(ClassPair.of(fromClass, toClass));
+        return pairStats != null ? top(pairStats.values(), k) : Collections.emptyList();
+    }
+
+    /**
+     * @return the k most expensive props of every profiled pair
+     */
+    public Map<ClassPair, List<PropertyCost>> report(int k) {
+        Map<ClassPair, List<PropertyCost>> result = new LinkedHashMap<>();
+        pairs.forEach((pair, pairStats) -> result.put(pair, top(pairStats.values(), k)));
+        return result;
+    }
+
+    public void reset() {
+        pairs.clear();
+    }
+
+    private static List<PropertyCost> top(Collection<PropertyStats> stats, int k) {
+        List<PropertyCost> costs = new ArrayList<>(stats.size());
+        for (PropertyStats stat : stats) {
+            PropertyCost cost = stat.snapshot();
+            if(cost.getSamples() > 0) {
+                costs.add(cost);
+            }
+        }
+        costs.sort(Comparator.comparingLong(PropertyCost::getMeanNanos).reversed());
+        return costs.size() > k ? new ArrayList<>(costs.subList(0, k)) : costs;
+    }
+
+
+    /**
+     * Profiling handle of a plan, stats are indexed like the plan's bindings
+     */
+    static final class PairProfile {
+        private final int sampleMask;
+        private final PropertyStats[] stats;
+
+        PairProfile(int sampleMask, PropertyStats[] stats) {
+            this.sampleMask = sampleMask;
+            this.stats = stats;
+        }
+
+        boolean sample() {
+            return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+        }
+
+        void record(int bindingIndex, long nanos) {
+            stats[bindingIndex].record(nanos);
+        }
+    }
+
+    private static final class PropertyStats {
+        final String fromProp;
+        final String toProp;
+        final LongAdder samples = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final Histogram histogram = new Histogram();
+
+        PropertyStats(String fromProp, String toProp) {
+            this.fromProp = fromProp;
+            this.toProp = toProp;
+        }
+
+        void record(long duration) {
+            samples.increment();
+            nanos.add(duration);
+            histogram.record(duration);
+        }
+
+        PropertyCost snapshot() {
+            return new PropertyCost(fromProp, toProp, samples.sum(), nanos.sum(), histogram.snapshot());
+        }
+    }
+
+
+    public static final class PropertyCost {
+        private final String fromProp;
+        private final String toProp;
+        private final long samples;
+        private final long totalNanos;
+        private final long[] histogram;
+
+        PropertyCost(String fromProp, String toProp, long samples, long totalNanos, long[] histogram) {
+            this.fromProp = fromProp;
+            this.toProp = toProp;
+            this.samples = samples;
+            this.totalNanos = totalNanos;
+            this.histogram = histogram;
+        }
+
+        public String getFromProp() {
+            return fromProp;
+        }
+
+        public String getToProp() {
+            return toProp;
+        }
+
+        public long getSamples() {
+            return samples;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMeanNanos() {
+            return samples == 0 ? 0 : totalNanos / samples;
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return the upper bound of the power of 2 bucket the percentile falls in
+         */
+        public long getPercentileNanos(double percentile) {
+            return Histogram.percentile(histogram, samples, percentile);
+        }
+
+        @Override
+        public String toString() {
+            return fromProp + ARROW + toProp + "{samples=" + samples + ", meanNanos=" + getMeanNanos() + ", p99Nanos=" + getPercentileNanos(99) + '}';
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
 
+import static eu.nonstatic.mapper.MapperEvents.EVENTS;
 import static java.lang.reflect.Modifier.isAbstract;
 import static java.lang.reflect.Modifier.isStatic;
 
@@ -51,6 +52,16 @@ public final class ReflectionUtils {
 
 
     public static Method findBuilderMethod(Class<?> clazz) throws NoSuchMethodException {
+        Object event = EVENTS.beginBuilderDiscovery();
+        Method builderMethod = null;
+        try {
+            return builderMethod = searchBuilderMethod(clazz);
+        } finally {
+            EVENTS.endBuilderDiscovery(event, clazz, builderMethod != null ? builderMethod.getName() : null);
+        }
+    }
+
+    private static Method searchBuilderMethod(Class<?> clazz) throws NoSuchMethodException {
         try {
             Method builderMethod = clazz.getMethod(DEFAULT_BUILDER_METHOD_NAME);
             if(isBuilderLikeMethod(builderMethod)) {
@@ -75,10 +86,17 @@ public final class ReflectionUtils {
 
 
     static boolean hasBuildLikeMethod(Class<?> builderClazz, Class<?> expectedBuiltType) {
+        return findBuildLikeMethod(builderClazz, expectedBuiltType) != null;
+    }
+
+    /**
+     * @return the method building expectedBuiltType out of builderClazz, or null if there is none
+     */
+    static Method findBuildLikeMethod(Class<?> builderClazz, Class<?> expectedBuiltType) {
         try {
             Method buildMethod = builderClazz.getMethod(DEFAULT_BUILDER_S_BUILD_METHOD_NAME);
             if(isBuildLikeMethod(buildMethod, expectedBuiltType)) {
-                return true;
+                return buildMethod;
             } else {
                 log.debug("{}.{}} method doesn't look like a build method", builderClazz.getSimpleName(), DEFAULT_BUILDER_S_BUILD_METHOD_NAME);
             }
@@ -89,10 +107,10 @@ public final class ReflectionUtils {
         // need to search better
         for (Method method : builderClazz.getMethods()) {
             if (isBuildLikeMethod(method, expectedBuiltType)) {
-                return true;
+                return method;
             }
         }
-        return false;
+        return null;
     }
 
     static boolean isBuilderLikeMethod(Method method) {
@@ -0,0 +1,19 @@
+package eu.nonstatic.mapper;
+
+/**
+ * Callback notified of an {@link AutoMapper}'s registry activity, eg: to measure what evictions cost in re-registrations.
+ * Calls happen synchronously on the registering thread, so implementations should be quick.
+ */
+public interface RegistrationListener {
+
+    /**
+     * @param clazz the class which just got introspected
+     * @param nanos the time the introspection took
+     * @param reRegistration true if clazz had previously been evicted from a bounded registry
+     */
+    void onRegistration(Class<?> clazz, long nanos, boolean reRegistration);
+
+    default void onEviction(Class<?> clazz) {
+        // nothing by default
+    }
+}
@@ -0,0 +1,70 @@
+package eu.nonstatic.mapper;
+
+/**
+ * Point in time counters of an {@link AutoMapper}'s registry
+ */
+public final class RegistryStats {
+
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long registrations;
+    private final long reRegistrations;
+    private final long registrationNanos;
+    private final long evictions;
+
+    RegistryStats(int size, long hits, long misses, long registrations, long reRegistrations, long registrationNanos, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.registrations = registrations;
+        this.reRegistrations = reRegistrations;
+        this.registrationNanos = registrationNanos;
+        this.evictions = evictions;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 1.0 : (double)hits / lookups;
+    }
+
+    public long getRegistrations() {
+        return registrations;
+    }
+
+    /**
+     * @return how many registrations were due to the class having been evicted before
+     */
+    public long getReRegistrations() {
+        return reRegistrations;
+    }
+
+    /**
+     * @return the cumulated time spent introspecting classes
+     */
+    public long getRegistrationNanos() {
+        return registrationNanos;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistryStats{size=" + size + ", hits=" + hits + ", misses=" + misses + ", registrations=" + registrations
+                + ", reRegistrations=" + reRegistrations + ", registrationNanos=" + registrationNanos + ", evictions=" + evictions + '}';
+    }
+}
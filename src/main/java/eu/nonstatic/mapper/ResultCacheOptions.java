@@ -0,0 +1,68 @@
+package eu.nonstatic.mapper;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * How the results of a (source class, target class) pair are cached, see {@link AutoMapper#cacheResults}.
+ * Sources are keyed by identity unless a key function is given.
+ */
+public final class ResultCacheOptions {
+
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    Function<Object, ?> keyFunction; // null for identity
+    int maxSize = DEFAULT_MAX_SIZE;
+    Duration timeToLive; // null for none
+    boolean weakKeys;
+
+
+    private ResultCacheOptions(Function<Object, ?> keyFunction) {
+        this.keyFunction = keyFunction;
+    }
+
+    /**
+     * Sources are keyed by identity, meant for immutable sources which instances are kept around
+     */
+    public static ResultCacheOptions byIdentity() {
+        return new ResultCacheOptions(null);
+    }
+
+    /**
+     * Sources are keyed by what keyFunction returns for them (eg: their id), compared with equals
+     */
+    @SuppressWarnings("unchecked")
+    public static <F> ResultCacheOptions byKey(Function<? super F, ?> keyFunction) {
+        return new ResultCacheOptions((Function<Object, ?>) keyFunction);
+    }
+
+    /**
+     * @param maxSize results kept, the least recently used ones being evicted beyond
+     */
+    public ResultCacheOptions maxSize(int maxSize) {
+        if(maxSize <= 0) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * @param timeToLive how long a result is served after being mapped, null for ever
+     */
+    public ResultCacheOptions timeToLive(Duration timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    /**
+     * Sources are weakly referenced, their results going away along with them. Only for identity keys.
+     */
+    public ResultCacheOptions weakKeys() {
+        if(keyFunction != null) {
+            throw new IllegalArgumentException("Weak keys are only for sources keyed by identity");
+        }
+        this.weakKeys = true;
+        return this;
+    }
+}
@@ -0,0 +1,54 @@
+package eu.nonstatic.mapper;
+
+/**
+ * Snapshot of the counters of a pair's result cache
+ */
+public final class ResultCacheStats {
+
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+
+    ResultCacheStats(int size, long hits, long misses, long evictions) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+    }
+
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return hits / (hits + misses), 0 when there was no lookup
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return results dropped for size or time to live, or because their weakly referenced source went away
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultCacheStats{size=" + size + ", hits=" + hits + ", misses=" + misses + ", hitRate=" + getHitRate()
+                + ", evictions=" + evictions + '}';
+    }
+}
@@ -0,0 +1,217 @@
+package eu.nonstatic.mapper;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Opt-in caches of mapping results by (source class, target class), only for targets declared immutable.
+ * Lookups are skipped altogether until a first cache is enabled.
+ */
+final class ResultCaches {
+
+    private final Set<Class<?>> immutableClasses = ConcurrentHashMap.newKeySet();
+    private final PlanCache<PairCache> caches = new PlanCache<>();
+    private volatile boolean enabled;
+
+
+    void declareImmutable(Class<?> clazz) {
+        immutableClasses.add(clazz);
+    }
+
+    void enable(Class<?> fromClass, Class<?> toClass, ResultCacheOptions options) {
+        if(!immutableClasses.contains(toClass)) {
+            throw new IllegalArgumentException(toClass.getName() + " must be declared immutable before its results are cached");
+        }
+        caches.put(fromClass, toClass, new PairCache(options));
+        enabled = true;
+    }
+
+    void disable(Class<?> fromClass, Class<?> toClass) {
+        caches.remove(fromClass, toClass);
+    }
+
+    /**
+     * @return null when results of that pair aren't cached
+     */
+    PairCache get(Class<?> fromClass, Class<?> toClass) {
+        return enabled ? caches.get(fromClass, toClass) : null;
+    }
+
+    /**
+     * Drops the cached results of every pair, not the caches, eg: when mappings changed
+     */
+    void invalidateAll() {
+        if(enabled) {
+            caches.forEach(PairCache::clear);
+        }
+    }
+
+    ResultCacheStats stats(Class<?> fromClass, Class<?> toClass) {
+        PairCache cache = get(fromClass, toClass);
+        return cache != null ? cache.stats() : null;
+    }
+
+
+    /**
+     * Size and time bounded LRU of the results of one pair
+     */
+    static final class PairCache {
+        private final ResultCacheOptions options;
+        private final long ttlNanos; // 0 for none
+        private final LinkedHashMap<Object, Result> results;
+        private final ReferenceQueue<Object> collectedSources; // null without weak keys
+        private final LongAdder hits = new LongAdder(), misses = new LongAdder(), evictions = new LongAdder();
+
+        PairCache(ResultCacheOptions options) {
+            this.options = options;
+            this.ttlNanos = options.timeToLive != null ? options.timeToLive.toNanos() : 0;
+            this.collectedSources = options.weakKeys ? new ReferenceQueue<>() : null;
+            this.results = new LinkedHashMap<Object, Result>(16, 0.75f, true) { // access order
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Object, Result> eldest) {
+                    boolean evict = size() > PairCache.this.options.maxSize;
+                    if(evict) {
+                        evictions.increment();
+                    }
+                    return evict;
+                }
+            };
+        }
+
+        /**
+         * @param mapping called outside the lock on a miss, concurrent misses on the same source may both map it
+         */
+        @SuppressWarnings("unchecked")
+        <T> T get(Object source, Supplier<T> mapping) {
+            Object key = options.keyFunction != null ? options.keyFunction.apply(source) : new IdentityKey(source);
+            synchronized (this) {
+                purgeCollected();
+                Result result = results.get(key);
+                if(result != null) {
+                    if(ttlNanos == 0 || System.nanoTime() - result.mappedAt < ttlNanos) {
+                        hits.increment();
+                        return (T) result.value;
+                    }
+                    results.remove(key);
+                    evictions.increment();
+                }
+            }
+            misses.increment();
+            T value = mapping.get();
+            Object storedKey = options.weakKeys ? new WeakIdentityKey(source, collectedSources) : key;
+            synchronized (this) {
+                results.put(storedKey, new Result(value, System.nanoTime()));
+            }
+            return value;
+        }
+
+        private void purgeCollected() {
+            if(collectedSources != null) {
+                Object collected;
+                while((collected = collectedSources.poll()) != null) {
+                    if(results.remove(collected) != null) {
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+
+        synchronized void clear() {
+            results.clear();
+        }
+
+        synchronized ResultCacheStats stats() {
+            purgeCollected();
+            if(ttlNanos != 0) {
+                long now = System.nanoTime();
+                for (Iterator<Result> it = results.values().iterator(); it.hasNext();) {
+                    if(now - it.next().mappedAt >= ttlNanos) {
+                        it.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+            return new ResultCacheStats(results.size(), hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+
+    private static final class Result {
+        final Object value;
+        final long mappedAt;
+
+        Result(Object value, long mappedAt) {
+            this.value = value;
+            this.mappedAt = mappedAt;
+        }
+    }
+
+
+    /**
+     * Source identity, strongly or weakly referenced; both kinds are equal when referencing the same source
+     */
+    private interface SourceKey {
+        Object source();
+    }
+
+    private static boolean sameSource(SourceKey key, Object other) {
+        if(key == other) {
+            return true;
+        }
+        Object source = key.source();
+        return source != null && other instanceof SourceKey && ((SourceKey) other).source() == source;
+    }
+
+    private static final class IdentityKey implements SourceKey {
+        private final Object source;
+
+        IdentityKey(Object source) {
+            this.source = source;
+        }
+
+        @Override
+        public Object source() {
+            return source;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameSource(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(source);
+        }
+    }
+
+    private static final class WeakIdentityKey extends WeakReference<Object> implements SourceKey {
+        private final int hash;
+
+        WeakIdentityKey(Object source, ReferenceQueue<Object> queue) {
+            super(source, queue);
+            this.hash = System.identityHashCode(source);
+        }
+
+        @Override
+        public Object source() {
+            return get();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return sameSource(this, o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package eu.nonstatic.mapper;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+
+/**
+ * Per-thread pools of released target instances, by class.
+ * No synchronization: an instance released by a thread can only be drawn again by that same thread.
+ */
+final class TargetPool {
+
+    private final int maxPerClass;
+    private final ThreadLocal<IdentityHashMap<Class<?>, ArrayDeque<Object>>> pools = ThreadLocal.withInitial(IdentityHashMap::new);
+
+
+    /**
+     * @param maxPerClass instances kept per class and thread, 0 for no pooling at all
+     */
+    TargetPool(int maxPerClass) {
+        if(maxPerClass < 0) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxPerClass);
+        }
+        this.maxPerClass = maxPerClass;
+    }
+
+    /**
+     * @return a released instance of clazz, or null if there is none
+     */
+    <T> T poll(Class<T> clazz) {
+        if(maxPerClass == 0) {
+            return null;
+        }
+        ArrayDeque<Object> pool = pools.get().get(clazz);
+        return pool != null ? clazz.cast(pool.pollLast()) : null;
+    }
+
+    /**
+     * @return false if the pool for that class was full, in which case the instance is left to the GC
+     */
+    boolean offer(Object instance) {
+        if(maxPerClass == 0) {
+            return false;
+        }
+        ArrayDeque<Object> pool = pools.get().computeIfAbsent(instance.getClass(), clazz -> new ArrayDeque<>(maxPerClass));
+        if(pool.size() < maxPerClass) {
+            pool.addLast(instance);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Only clears the calling thread's pools
+     */
+    void clear() {
+        pools.remove();
+    }
+}
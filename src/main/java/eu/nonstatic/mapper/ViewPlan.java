@@ -0,0 +1,226 @@
+package eu.nonstatic.mapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static eu.nonstatic.mapper.ColumnLayout.unreflect;
+import static eu.nonstatic.mapper.MappingUtils.wrap;
+import static java.lang.reflect.Modifier.isStatic;
+
+/**
+ * Which getter of a source class backs each method of a view interface, resolved once per (source class, interface).
+ * Views are JDK proxies: their handler only looks up the called method's slot, then calls the resolved source getter's handle.
+ */
+final class ViewPlan {
+
+    private static final Object NOT_MEMOIZED = new Object();
+    private static final int TO_STRING = -1, HASH_CODE = -2, EQUALS = -3;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    final GettersAndSetters gsFrom;
+    final Class<?> viewInterface;
+    private final Map<Method, Integer> slots; // interface method => slot, read only once built
+    private final String[] slotProps;
+    private final MethodHandle[] slotGetters; // (Object)Object, null for default methods
+    private final Class<?>[] slotPrimitives; // primitive return types backed by getters which may return null, null otherwise
+    private final MethodHandle[] slotDefaults; // default methods, unbound
+    private final ConcurrentHashMap<Projection, boolean[]> memoizations = new ConcurrentHashMap<>();
+
+
+    private ViewPlan(GettersAndSetters gsFrom, Class<?> viewInterface, Map<Method, Integer> slots,
+                     String[] slotProps, MethodHandle[] slotGetters, Class<?>[] slotPrimitives, MethodHandle[] slotDefaults) {
+        this.gsFrom = gsFrom;
+        this.viewInterface = viewInterface;
+        this.slots = slots;
+        this.slotProps = slotProps;
+        this.slotGetters = slotGetters;
+        this.slotPrimitives = slotPrimitives;
+        this.slotDefaults = slotDefaults;
+    }
+
+    /**
+     * @throws IllegalArgumentException if viewInterface isn't an interface, has abstract methods which aren't getters,
+     * or getters the source class can't back with a compatible type
+     */
+    static ViewPlan compile(GettersAndSetters gsFrom, Class<?> viewInterface) throws IllegalArgumentException {
+        if(!viewInterface.isInterface()) {
+            throw new IllegalArgumentException(viewInterface.getName() + " is not an interface");
+        }
+        GettersAndSetters gsView = GettersAndSetters.ofInterface(viewInterface);
+        Method[] methods = viewInterface.getMethods();
+        Map<Method, Integer> slots = new HashMap<>();
+        String[] slotProps = new String[methods.length];
+        MethodHandle[] slotGetters = new MethodHandle[methods.length];
+        Class<?>[] slotPrimitives = new Class<?>[methods.length];
+        MethodHandle[] slotDefaults = new MethodHandle[methods.length];
+        int slot = 0;
+        for (Method method : methods) {
+            if(isStatic(method.getModifiers())) {
+                continue;
+            }
+            if(method.isDefault()) {
+                slotDefaults[slot] = unreflectDefault(viewInterface, method);
+            } else {
+                String prop = findGetterProp(gsView, method);
+                int fromId = prop != null ? gsFrom.propId(prop) : -1;
+                Method getter = fromId >= 0 ? gsFrom.getter(fromId) : null;
+                if(getter == null) {
+                    throw new IllegalArgumentException(gsFrom.targetClassName + " has no getter backing " + viewInterface.getName() + '#' + method.getName());
+                } else if(!wrap(method.getReturnType()).isAssignableFrom(wrap(getter.getReturnType()))) {
+                    throw new IllegalArgumentException(gsFrom.targetClassName + '.' + prop + " is not assignable to the return type of "
+                            + viewInterface.getName() + '#' + method.getName());
+                }
+                slotProps[slot] = prop;
+                slotGetters[slot] = unreflect(getter).asType(GETTER_TYPE);
+                if(method.getReturnType().isPrimitive() && !getter.getReturnType().isPrimitive()) {
+                    slotPrimitives[slot] = method.getReturnType();
+                }
+            }
+            slots.put(method, slot++);
+        }
+        return new ViewPlan(gsFrom, viewInterface, slots,
+                Arrays.copyOf(slotProps, slot), Arrays.copyOf(slotGetters, slot), Arrays.copyOf(slotPrimitives, slot), Arrays.copyOf(slotDefaults, slot));
+    }
+
+    private static String findGetterProp(GettersAndSetters gsView, Method method) {
+        for (int id = 0; id < gsView.propCount(); id++) {
+            if(method.equals(gsView.getter(id))) {
+                return gsView.propName(id);
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle unreflectDefault(Class<?> viewInterface, Method method) {
+        try {
+            return MethodHandles.privateLookupIn(viewInterface, MethodHandles.lookup()).unreflectSpecial(method, viewInterface);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("Can't call default method " + viewInterface.getName() + '#' + method.getName(), e);
+        }
+    }
+
+    /**
+     * @return true when this plan was compiled against that very registration
+     */
+    boolean isCompiledFor(GettersAndSetters gsFrom) {
+        return this.gsFrom == gsFrom;
+    }
+
+    /**
+     * @param memoized null or the props which values are read only once per view
+     * @throws IllegalArgumentException if a memoized prop isn't part of the view
+     */
+    @SuppressWarnings("unchecked")
+    <V> V view(Object fromInstance, Projection memoized) throws IllegalArgumentException {
+        boolean[] memoizedSlots = memoized != null ? memoizations.computeIfAbsent(memoized, this::memoizedSlots) : null;
+        return (V) Proxy.newProxyInstance(viewInterface.getClassLoader(), new Class<?>[]{viewInterface},
+                new ViewHandler(this, fromInstance, memoizedSlots));
+    }
+
+    private boolean[] memoizedSlots(Projection memoized) {
+        boolean[] memoizedSlots = new boolean[slotProps.length];
+        List<String> props = memoized.getProps();
+        for (String prop : props) {
+            boolean found = false;
+            for (int slot = 0; slot < slotProps.length; slot++) {
+                if(prop.equals(slotProps[slot])) {
+                    memoizedSlots[slot] = found = true;
+                }
+            }
+            if(!found) {
+                throw new IllegalArgumentException(viewInterface.getName() + " has no " + prop + " prop to memoize");
+            }
+        }
+        return memoizedSlots;
+    }
+
+
+    private static final class ViewHandler implements InvocationHandler {
+        private final ViewPlan plan;
+        private final Object source;
+        private final boolean[] memoizedSlots; // null when nothing is memoized
+        private final Object[] memo; // NOT_MEMOIZED until read
+
+        ViewHandler(ViewPlan plan, Object source, boolean[] memoizedSlots) {
+            this.plan = plan;
+            this.source = source;
+            this.memoizedSlots = memoizedSlots;
+            if(memoizedSlots != null) {
+                this.memo = new Object[memoizedSlots.length];
+                Arrays.fill(memo, NOT_MEMOIZED);
+            } else {
+                this.memo = null;
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Integer slotRef = plan.slots.get(method);
+            int slot = slotRef != null ? slotRef : objectMethodSlot(method);
+            switch (slot) {
+                case TO_STRING:
+                    return plan.viewInterface.getSimpleName() + " view of " + source;
+                case HASH_CODE:
+                    return System.identityHashCode(proxy);
+                case EQUALS:
+                    return proxy == args[0];
+                default:
+                    MethodHandle getter = plan.slotGetters[slot];
+                    if(getter == null) {
+                        Object[] arguments = new Object[args != null ? args.length + 1 : 1]; // default methods aren't on the fast path
+                        arguments[0] = proxy;
+                        if(args != null) {
+                            System.arraycopy(args, 0, arguments, 1, args.length);
+                        }
+                        return plan.slotDefaults[slot].invokeWithArguments(arguments);
+                    }
+                    Object value;
+                    if(memoizedSlots != null && memoizedSlots[slot]) {
+                        value = memo[slot];
+                        if(value == NOT_MEMOIZED) { // racing threads may both read the source, the getter is expected to be idempotent
+                            memo[slot] = value = read(getter);
+                        }
+                    } else {
+                        value = read(getter);
+                    }
+                    if(value == null && plan.slotPrimitives[slot] != null) { // the proxy would throw a bare NPE unboxing it
+                        throw new IllegalArgumentException(plan.gsFrom.targetClassName + '.' + plan.slotProps[slot] + " is null, "
+                                + plan.viewInterface.getName() + '#' + method.getName() + " can't return it as " + plan.slotPrimitives[slot]);
+                    }
+                    return value;
+            }
+        }
+
+        private Object read(MethodHandle getter) {
+            try {
+                return (Object) getter.invokeExact(source);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) { // checked exception from the getter
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        private static int objectMethodSlot(Method method) {
+            switch (method.getName()) {
+                case "toString":
+                    return TO_STRING;
+                case "hashCode":
+                    return HASH_CODE;
+                case "equals":
+                    return EQUALS;
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }
+    }
+}
@@ -1,14 +1,47 @@
 package eu.nonstatic.mapper.auto;
 
 import eu.nonstatic.mapper.AutoMapper;
+import eu.nonstatic.mapper.BinaryLayout;
+import eu.nonstatic.mapper.ChangedProps;
+import eu.nonstatic.mapper.ClassPair;
+import eu.nonstatic.mapper.ColumnSet;
+import eu.nonstatic.mapper.Deduplication;
+import eu.nonstatic.mapper.FootprintReport;
+import eu.nonstatic.mapper.FrozenMapper;
+import eu.nonstatic.mapper.IntrospectionIndex;
+import eu.nonstatic.mapper.LongAdderMapperMetrics;
+import eu.nonstatic.mapper.MappingSite;
+import eu.nonstatic.mapper.PlanExplanation;
+import eu.nonstatic.mapper.Projection;
+import eu.nonstatic.mapper.PropertyProfiler;
+import eu.nonstatic.mapper.RegistrationListener;
+import eu.nonstatic.mapper.RegistryStats;
+import eu.nonstatic.mapper.ResultCacheOptions;
+import eu.nonstatic.mapper.ResultCacheStats;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
 
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
@@ -204,4 +237,600 @@ public class AutoMapperTest {
         PojoClass pojo = POJO_CANONICAL;
         mapper.<LombokBaseClass.LombokBaseClassBuilder>mapToBuilder(pojo, LombokBaseClass.class);
     }
+
+    @Test
+    public void should_report_footprint() {
+        AutoMapper mapper = new AutoMapper();
+        assertEquals(0, mapper.footprint().getRegisteredClasses());
+
+        mapper.mapToInstance(POJO_CANONICAL, PojoShadow.class);
+        FootprintReport report = mapper.footprint();
+        assertEquals(2, report.getRegisteredClasses());
+        assertTrue(report.getBytes(PojoClass.class) > 0);
+        assertEquals(-1, report.getBytes(LombokSimpleClass.class));
+        assertEquals(report.getBytes(PojoClass.class) + report.getBytes(PojoShadow.class), report.getTotalBytes());
+    }
+
+    @Test
+    public void should_evict_from_bounded_registry() {
+        List<Class<?>> evicted = new ArrayList<>();
+        AutoMapper mapper = new AutoMapper().setRegistryBounds(2, null)
+                .setRegistrationListener(new RegistrationListener() {
+                    @Override
+                    public void onRegistration(Class<?> clazz, long nanos, boolean reRegistration) {
+                        assertEquals(clazz == PojoClass.class && !evicted.isEmpty(), reRegistration);
+                    }
+
+                    @Override
+                    public void onEviction(Class<?> clazz) {
+                        evicted.add(clazz);
+                    }
+                });
+
+        mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        mapper.mapToInstance(POJO_CANONICAL, PojoShadow.class);
+        assertTrue(evicted.isEmpty());
+        mapper.mapToInstance(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals(singletonList(PojoShadow.class), evicted); // PojoClass was used last
+
+        RegistryStats stats = mapper.getRegistryStats();
+        assertEquals(2, stats.getSize());
+        assertEquals(3, stats.getRegistrations());
+        assertEquals(1, stats.getEvictions());
+        assertEquals(3, stats.getHits());
+        assertEquals(3, stats.getMisses());
+
+        mapper.setRegistryBounds(1, null);
+        assertEquals(1, mapper.getRegistryStats().getSize());
+        mapper.getRegistration(PojoShadow.class);
+        mapper.getRegistration(PojoClass.class); // evicted either when shrinking or by PojoShadow
+        assertEquals(1, mapper.getRegistryStats().getReRegistrations());
+    }
+
+    @Test
+    public void should_notify_evictions_outside_registry_lock() {
+        AutoMapper[] mapperRef = new AutoMapper[1];
+        List<Class<?>> evicted = new ArrayList<>();
+        AutoMapper mapper = new AutoMapper().setRegistryBounds(2, null)
+                .setRegistrationListener(new RegistrationListener() {
+                    @Override
+                    public void onRegistration(Class<?> clazz, long nanos, boolean reRegistration) {
+                    }
+
+                    @Override
+                    public void onEviction(Class<?> clazz) {
+                        evicted.add(clazz);
+                        assertNotNull(mapperRef[0].getRegistration(PojoClass.class)); // the registry isn't being iterated anymore
+                    }
+                });
+        mapperRef[0] = mapper;
+
+        mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        mapper.mapToInstance(POJO_CANONICAL, PojoShadow.class);
+        mapper.mapToInstance(POJO_CANONICAL, PojoEnums.class);
+        assertEquals(singletonList(PojoShadow.class), evicted);
+        assertEquals(2, mapper.getRegistryStats().getSize());
+    }
+
+    @Test
+    public void should_warm_up() {
+        AutoMapper mapper = new AutoMapper().setAutoRegister(false);
+        assertThrows(IllegalArgumentException.class, () -> mapper.mapToInstance(POJO_CANONICAL, PojoShadow.class));
+
+        mapper.warmUp(Arrays.asList(PojoClass.class, PojoShadow.class, LombokSimpleClass.class));
+        assertEquals(4, mapper.getRegistryStats().getSize()); // + LombokSimpleClass' builder
+        assertEquals("shadow", mapper.mapToInstance(POJO_CANONICAL, PojoShadow.class).getMyShadowedString());
+
+        mapper.warmUpPairs(singletonList(ClassPair.of(PojoClass.class, LombokSimpleClass.class)), 100, ForkJoinPool.commonPool());
+        LombokSimpleClass.LombokSimpleClassBuilder builder = mapper.mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals(POJO_CANONICAL.getMyString(), builder.build().getMyString());
+        assertEquals(4, mapper.getRegistryStats().getSize());
+    }
+
+    @Test
+    public void should_map_from_introspection_index() throws IOException {
+        IntrospectionIndex index = IntrospectionIndex.scan(getClass().getClassLoader(), "eu.nonstatic.mapper.auto");
+        assertTrue(index.contains(PojoClass.class));
+        assertTrue(index.contains(LombokSimpleClass.LombokSimpleClassBuilder.class));
+        assertFalse(index.contains(SomeInterface.class));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.writeTo(bytes);
+        IntrospectionIndex readIndex = IntrospectionIndex.readFrom(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(index.size(), readIndex.size());
+
+        AutoMapper mapper = new AutoMapper().setIntrospectionIndex(readIndex);
+        assertEquals(new AutoMapper().getRegistration(PojoClass.class).getters(), mapper.getRegistration(PojoClass.class).getters());
+        assertEquals(POJO_CANONICAL, mapper.mapToInstance(POJO_CANONICAL, PojoClass.class));
+        LombokSimpleClass.LombokSimpleClassBuilder builder = mapper.mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals(POJO_CANONICAL.getMyString(), builder.build().getMyString());
+
+        StringWriter reflectConfig = new StringWriter();
+        readIndex.writeReflectConfig(reflectConfig);
+        assertTrue(reflectConfig.toString().contains("\"name\" : \"eu.nonstatic.mapper.auto.PojoClass\""));
+    }
+
+    @Test
+    public void should_index_builders_in_their_owner_mode() {
+        IntrospectionIndex index = IntrospectionIndex.of(Arrays.asList(LombokSimpleClass.LombokSimpleClassBuilder.class, LombokSimpleClass.class)); // builder first
+        AutoMapper mapper = new AutoMapper().setIntrospectionIndex(index);
+        LombokSimpleClass.LombokSimpleClassBuilder builder = mapper.mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals(POJO_CANONICAL.getMyString(), builder.build().getMyString());
+    }
+
+    @Test
+    public void should_introspect_classes_changed_since_indexed() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        IntrospectionIndex.of(singletonList(PojoEntityBase.class)).writeTo(bytes);
+        // as if PojoEntity had been indexed before it got its name prop
+        byte[] stale = replaceUtf(bytes.toByteArray(), PojoEntityBase.class.getName(), PojoEntity.class.getName());
+        IntrospectionIndex index = IntrospectionIndex.readFrom(new ByteArrayInputStream(stale));
+        assertTrue(index.contains(PojoEntity.class));
+
+        PojoEntity entity = new PojoEntity();
+        entity.setId(3L);
+        entity.setName("entity");
+        PojoEntity copy = new AutoMapper().setIntrospectionIndex(index).mapToInstance(entity, PojoEntity.class);
+        assertEquals("entity", copy.getName());
+        assertEquals(Long.valueOf(3L), copy.getId());
+    }
+
+    private static byte[] replaceUtf(byte[] bytes, String from, String to) throws IOException {
+        ByteArrayOutputStream fromUtf = new ByteArrayOutputStream(), toUtf = new ByteArrayOutputStream();
+        new DataOutputStream(fromUtf).writeUTF(from);
+        new DataOutputStream(toUtf).writeUTF(to);
+        byte[] fromBytes = fromUtf.toByteArray(), toBytes = toUtf.toByteArray();
+        for (int i = 0; i <= bytes.length - fromBytes.length; i++) {
+            if(Arrays.equals(Arrays.copyOfRange(bytes, i, i + fromBytes.length), fromBytes)) {
+                ByteArrayOutputStream replaced = new ByteArrayOutputStream();
+                replaced.write(bytes, 0, i);
+                replaced.write(toBytes);
+                replaced.write(bytes, i + fromBytes.length, bytes.length - i - fromBytes.length);
+                return replaced.toByteArray();
+            }
+        }
+        throw new IllegalArgumentException(from + " not found");
+    }
+
+    @Test
+    public void should_record_metrics() {
+        LongAdderMapperMetrics metrics = new LongAdderMapperMetrics(1);
+        AutoMapper mapper = new AutoMapper().setMetrics(metrics);
+
+        PojoClass pojo = new PojoClass();
+        pojo.setMyNumber(987L); // can't be assigned to an Integer
+        for (int i = 0; i < 10; i++) {
+            mapper.map(pojo, new LombokSimpleClass(), "myShort");
+        }
+        assertThrows(IllegalArgumentException.class, () -> mapper.map(pojo, new LombokSimpleClass())); // myShort won't be unboxed to null
+        mapper.mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+
+        LongAdderMapperMetrics.Snapshot snapshot = metrics.snapshot();
+        LongAdderMapperMetrics.PairSnapshot pair = snapshot.getPair(PojoClass.class, LombokSimpleClass.class);
+        assertEquals(11, pair.getCalls());
+        assertEquals(10, pair.getSampledCalls()); // the failed one isn't timed
+        assertEquals(11, pair.getIncompatibleProperties());
+        assertEquals(1, pair.getPropertyExceptions());
+        assertTrue(pair.getPercentileNanos(50) <= pair.getPercentileNanos(99));
+        assertEquals(1, snapshot.getPair(PojoClass.class, LombokSimpleClass.LombokSimpleClassBuilder.class).getCalls());
+        assertEquals(1, snapshot.getBuilderDiscoveries());
+        assertEquals(3, snapshot.getRegistrations());
+        assertNull(snapshot.getPair(PojoShadow.class, PojoClass.class));
+    }
+
+    @Test
+    public void should_emit_jfr_events() throws IOException {
+        Path dump = Files.createTempFile("automapper", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("eu.nonstatic.mapper.Introspection");
+            recording.enable("eu.nonstatic.mapper.BuilderDiscovery");
+            recording.enable("eu.nonstatic.mapper.PlanCompilation");
+            recording.enable("eu.nonstatic.mapper.SlowMapping").withThreshold(Duration.ZERO);
+            recording.start();
+            new AutoMapper().mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+            recording.stop();
+            recording.dump(dump);
+
+            List<String> eventNames = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                eventNames.add(event.getEventType().getName());
+            }
+            assertEquals(3, eventNames.stream().filter("eu.nonstatic.mapper.Introspection"::equals).count()); // pojo, lombok, builder
+            assertTrue(eventNames.contains("eu.nonstatic.mapper.BuilderDiscovery"));
+            assertTrue(eventNames.contains("eu.nonstatic.mapper.PlanCompilation"));
+            assertTrue(eventNames.contains("eu.nonstatic.mapper.SlowMapping"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    @Test
+    public void should_profile_properties() {
+        PropertyProfiler profiler = new PropertyProfiler(1);
+        AutoMapper mapper = new AutoMapper().setPropertyProfiler(profiler);
+
+        PojoSlowGetter pojo = new PojoSlowGetter();
+        pojo.setMyString("FooBar");
+        for (int i = 0; i < 10; i++) {
+            mapper.mapToInstance(pojo, PojoClass.class, "myLong");
+        }
+
+        List<PropertyProfiler.PropertyCost> top = profiler.topProperties(PojoSlowGetter.class, PojoClass.class, 3);
+        assertEquals(3, top.size());
+        assertEquals("myString", top.get(0).getFromProp());
+        assertEquals(10, top.get(0).getSamples());
+        assertTrue(top.get(0).getMeanNanos() >= 2_000_000);
+        assertTrue(profiler.topProperties(PojoClass.class, PojoSlowGetter.class, 3).isEmpty());
+        assertTrue(profiler.report(10).get(ClassPair.of(PojoSlowGetter.class, PojoClass.class))
+                .stream().noneMatch(cost -> "myLong".equals(cost.getFromProp()))); // excluded, never sampled
+    }
+
+    @Test
+    public void should_explain_plan() {
+        PlanExplanation explanation = mapper.explain(PojoClass.class, LombokSimpleClass.class, "myString");
+        assertEquals(Arrays.asList("AAA", "myBoolean", "myBooleanWrapper", "myList", "myLong"), explanation.getMapped());
+        assertEquals(singletonList("myShort"), explanation.getCoerced()); // Short to short
+        assertEquals(singletonList("myNumber"), explanation.getIncompatible()); // Number to Integer
+        assertEquals(singletonList("myString"), explanation.getExcluded());
+        assertEquals(Arrays.asList("myShadowedString", "unused"), explanation.getUnmatchedGetters());
+        assertEquals(Arrays.asList("anything", "myString"), explanation.getUnmatchedSetters());
+
+        assertEquals(singletonList("anything"), mapper.explainToBuilder(PojoClass.class, LombokSimpleClass.class).getUnmatchedSetters());
+    }
+
+    @Test
+    public void should_map_projection() {
+        Projection projection = Projection.of("myString", "myLong");
+        PojoClass pojo = mapper.mapToInstance(POJO_CANONICAL, PojoClass.class, projection);
+        assertEquals("Hello World", pojo.getMyString());
+        assertEquals(123L, pojo.getMyLong());
+        assertNull(pojo.getMyShort());
+        assertNull(pojo.getMyList());
+
+        LombokSimpleClass lombok = mapper.<LombokSimpleClass.LombokSimpleClassBuilder>mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class, projection).build();
+        assertEquals("Hello World", lombok.getMyString());
+        assertEquals(0, lombok.getMyShort());
+
+        assertThrows(IllegalArgumentException.class, () -> mapper.map(POJO_CANONICAL, new PojoClass(), Projection.of("nope")));
+    }
+
+    @Test
+    public void should_map_changed_props_only() {
+        PojoClass pojo = mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        assertTrue(mapper.mapChanged(POJO_CANONICAL, pojo).isEmpty());
+
+        PojoClass patch = new PojoClass();
+        patch.setMyString("Patched");
+        patch.setMyLong(123L);
+        patch.setMyBoolean(true); // primitives are never null, hence never skipped
+        ChangedProps changed = mapper.mapChanged(patch, pojo, true);
+        assertEquals(singletonList("myString"), changed.getProps()); // others unchanged or null
+        assertTrue(changed.isChanged("myString"));
+        assertEquals("Patched", pojo.getMyString());
+        assertEquals(POJO_CANONICAL.getMyList(), pojo.getMyList());
+
+        changed = mapper.mapChanged(patch, pojo);
+        assertFalse(changed.isChanged("myString"));
+        assertTrue(changed.isChanged("myList"));
+        assertFalse(changed.isChanged("myLong"));
+    }
+
+    @Test
+    public void should_compare_on_mapped_props() {
+        PojoClass pojo = mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        assertTrue(mapper.equalsOn(POJO_CANONICAL, pojo));
+        assertEquals(mapper.hashOn(POJO_CANONICAL), mapper.hashOn(pojo));
+        assertTrue(mapper.diff(POJO_CANONICAL, pojo).isEmpty());
+
+        pojo.setMyLong(321L);
+        assertFalse(mapper.equalsOn(POJO_CANONICAL, pojo));
+        assertEquals(singletonList("myLong"), mapper.diff(POJO_CANONICAL, pojo).getProps());
+
+        LombokSimpleClass lombok = mapper.mapToInstance(POJO_CANONICAL, LombokSimpleClass.class);
+        assertTrue(mapper.equalsOn(POJO_CANONICAL, lombok));
+        lombok.setAnything("not mapped, not compared");
+        assertTrue(mapper.equalsOn(POJO_CANONICAL, lombok));
+        lombok.setMyString("Bye World");
+        assertEquals(singletonList("myString"), mapper.diff(POJO_CANONICAL, lombok).getProps());
+
+        PojoClass longNumber = mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        longNumber.setMyNumber(987L); // can't be assigned to an Integer, hence neither mapped nor compared
+        LombokSimpleClass fromLongNumber = mapper.mapToInstance(longNumber, LombokSimpleClass.class);
+        assertTrue(mapper.equalsOn(longNumber, fromLongNumber));
+        assertTrue(mapper.diff(longNumber, fromLongNumber).isEmpty());
+        assertTrue(mapper.mapChanged(longNumber, fromLongNumber).isEmpty());
+    }
+
+    @Test
+    public void should_view_through_interface() {
+        PojoClass pojo = mapper.mapToInstance(POJO_CANONICAL, PojoClass.class);
+        PojoView view = mapper.view(pojo, PojoView.class);
+        assertEquals("Hello World", view.getMyString());
+        assertEquals("Hello World 123", view.describe());
+
+        pojo.setMyString("Bye World"); // nothing was copied
+        assertEquals("Bye World", view.getMyString());
+
+        PojoView memoizing = mapper.view(pojo, PojoView.class, Projection.of("myString"));
+        assertEquals("Bye World", memoizing.getMyString());
+        pojo.setMyString("Hello again");
+        pojo.setMyLong(321L);
+        assertEquals("Bye World", memoizing.getMyString());
+        assertEquals(321L, memoizing.getMyLong());
+
+        assertEquals((short)77, view.getMyShort());
+        pojo.setMyShort(null);
+        assertThrows(IllegalArgumentException.class, view::getMyShort);
+
+        assertThrows(IllegalArgumentException.class, () -> mapper.view(pojo, SomeAbstractClass.class));
+    }
+
+    @Test
+    public void should_reuse_pooled_targets() {
+        LombokSimpleClass lombok = mapper.mapToPooled(POJO_CANONICAL, LombokSimpleClass.class);
+        lombok.setAnything("left over");
+        assertTrue(mapper.release(lombok));
+
+        PojoClass pojo = new PojoClass();
+        pojo.setMyString("FooBar");
+        pojo.setMyShort((short)5);
+        LombokSimpleClass reused = mapper.mapToPooled(pojo, LombokSimpleClass.class);
+        assertSame(lombok, reused);
+        assertEquals("FooBar", reused.getMyString());
+        assertEquals(5, reused.getMyShort());
+        assertNull(reused.getAnything()); // not mapped, reset
+        assertNull(reused.getMyNumber()); // null Number isn't assignable to Integer hence skipped, but reset
+
+        mapper.release(reused);
+        mapper.clearTargetPool();
+        assertNotSame(reused, mapper.mapToPooled(pojo, LombokSimpleClass.class));
+
+        mapper.setTargetPoolSize(0);
+        assertFalse(mapper.release(reused));
+    }
+
+    @Test
+    public void should_map_to_and_from_columns() {
+        List<PojoClass> pojos = Arrays.asList(POJO_CANONICAL, mapper.mapToInstance(POJO_CANONICAL, PojoClass.class, "myString", "myLong"));
+        ColumnSet columns = mapper.mapToColumns(pojos, PojoClass.class);
+        assertEquals(2, columns.size());
+        assertArrayEquals(new long[]{123L, 0L}, columns.getLongs("myLong"));
+        assertArrayEquals(new boolean[]{true, true}, columns.getBooleans("myBoolean"));
+        assertArrayEquals(new String[]{"Hello World", null}, columns.getObjects("myString"));
+        assertEquals(String[].class, columns.getColumn("myString").getClass());
+        assertThrows(IllegalArgumentException.class, () -> columns.getInts("myLong"));
+
+        assertEquals(pojos, mapper.mapFromColumns(columns, PojoClass.class));
+        List<LombokSimpleClass.LombokSimpleClassBuilder> builders = mapper.mapFromColumnsToBuilders(columns, LombokSimpleClass.class);
+        assertEquals("Hello World", builders.get(0).build().getMyString());
+        assertEquals((short)77, builders.get(1).build().getMyShort());
+
+        ColumnSet nullShorts = mapper.mapToColumns(singletonList(new PojoClass()), PojoClass.class);
+        assertThrows(IllegalArgumentException.class, () -> mapper.mapFromColumns(nullShorts, LombokSimpleClass.class)); // Short null into a short
+    }
+
+    @Test
+    public void should_map_to_and_from_binary() {
+        BinaryLayout layout = mapper.binaryLayout(PojoClass.class);
+        assertEquals(Arrays.asList("myBoolean", "myBooleanWrapper", "myLong", "myShadowedString", "myShort", "myString"), layout.getProps());
+        assertTrue(layout.isVariableSize());
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+        int size = mapper.mapToBinary(POJO_CANONICAL, buffer);
+        assertEquals(layout.sizeOf(POJO_CANONICAL), size);
+        mapper.mapToBinary(POJO_FOOBAR, buffer);
+        buffer.flip();
+
+        assertEquals(123L, layout.getLong(buffer, 0, layout.fieldOf("myLong")));
+        assertEquals("FooBar", layout.get(buffer, size, layout.fieldOf("myString")));
+        assertNull(layout.get(buffer, size, layout.fieldOf("myShort")));
+
+        LombokSimpleClass.LombokSimpleClassBuilder builder = mapper.mapFromBinaryToBuilder(buffer, layout, LombokSimpleClass.class);
+        assertEquals(size, buffer.position());
+        LombokSimpleClass lombok = builder.build();
+        assertEquals("Hello World", lombok.getMyString());
+        assertEquals((short)77, lombok.getMyShort());
+        assertNull(lombok.getMyList()); // not part of the layout
+
+        PojoClass foobar = mapper.mapFromBinary(buffer, layout, PojoClass.class);
+        assertFalse(buffer.hasRemaining());
+        assertEquals(POJO_FOOBAR, foobar);
+    }
+
+    @Test
+    public void should_cache_immutable_results() {
+        AutoMapper mapper = new AutoMapper();
+        assertThrows(IllegalArgumentException.class, () -> mapper.cacheResults(PojoClass.class, LombokSimpleClass.class, ResultCacheOptions.byIdentity()));
+
+        mapper.declareImmutable(LombokSimpleClass.class)
+              .cacheResults(PojoClass.class, LombokSimpleClass.class, ResultCacheOptions.byIdentity().maxSize(1));
+        LombokSimpleClass lombok = mapper.mapToBuilt(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals("Hello World", lombok.getMyString());
+        assertSame(lombok, mapper.mapToBuilt(POJO_CANONICAL, LombokSimpleClass.class));
+        assertNotSame(lombok, mapper.mapToBuilt(POJO_FOOBAR, LombokSimpleClass.class)); // evicts the canonical one
+        assertNotSame(lombok, mapper.mapToBuilt(POJO_CANONICAL, LombokSimpleClass.class));
+
+        ResultCacheStats stats = mapper.getResultCacheStats(PojoClass.class, LombokSimpleClass.class);
+        assertEquals(1, stats.getSize());
+        assertEquals(1, stats.getHits());
+        assertEquals(3, stats.getMisses());
+        assertEquals(2, stats.getEvictions());
+
+        mapper.uncacheResults(PojoClass.class, LombokSimpleClass.class);
+        assertNull(mapper.getResultCacheStats(PojoClass.class, LombokSimpleClass.class));
+    }
+
+    @Test
+    public void should_convert_enums() {
+        AutoMapper mapper = new AutoMapper();
+        PojoEnums enums = new PojoEnums();
+        enums.setMyEnum(SomeEnum.FOO);
+        enums.setMyName("BAR");
+        enums.setMyOther(OtherEnum.BAZ);
+
+        PojoOtherEnums other = mapper.mapToInstance(enums, PojoOtherEnums.class);
+        assertEquals(OtherEnum.FOO, other.getMyEnum()); // by name
+        assertEquals(SomeEnum.BAR, other.getMyName());
+        assertEquals("BAZ", other.getMyOther());
+        assertEquals(Arrays.asList("myEnum", "myName", "myOther"), mapper.explain(PojoEnums.class, PojoOtherEnums.class).getCoerced());
+
+        enums.setMyEnum(SomeEnum.BAR);
+        enums.setMyName("QUX");
+        other = mapper.mapToInstance(enums, PojoOtherEnums.class);
+        assertNull(other.getMyEnum()); // no counterpart
+        assertNull(other.getMyName());
+
+        mapper.declareImmutable(PojoOtherEnums.class)
+              .cacheResults(PojoEnums.class, PojoOtherEnums.class, ResultCacheOptions.byIdentity());
+        assertNull(mapper.mapToInstance(enums, PojoOtherEnums.class).getMyEnum()); // cached
+        mapper.registerEnumMapping(SomeEnum.BAR, OtherEnum.BAZ);
+        assertEquals(OtherEnum.BAZ, mapper.mapToInstance(enums, PojoOtherEnums.class).getMyEnum());
+        assertThrows(IllegalArgumentException.class, () -> mapper.registerEnumMapping(SomeEnum.BAR, SomeEnum.FOO));
+    }
+
+    @Test
+    public void should_deduplicate_batch_values() {
+        List<PojoClass> batch = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            PojoClass pojo = new PojoClass();
+            pojo.setMyString(new String("FR")); // distinct instances, as deserialized
+            pojo.setMyShadowedString(new String("shadow"));
+            batch.add(pojo);
+        }
+        batch.add(null);
+
+        Deduplication deduplication = Deduplication.of("myString");
+        List<LombokSimpleClass> lomboks = mapper.mapAll(batch, LombokSimpleClass.class, deduplication);
+        assertEquals(5, lomboks.size());
+        assertNull(lomboks.get(4));
+        assertEquals("FR", lomboks.get(0).getMyString());
+        assertSame(lomboks.get(0).getMyString(), lomboks.get(3).getMyString());
+        assertEquals(3, deduplication.getSharedCount("myString"));
+
+        List<PojoClass> pojos = mapper.mapAll(batch, PojoClass.class, deduplication);
+        assertSame(lomboks.get(0).getMyString(), pojos.get(1).getMyString()); // across batches
+        assertNotSame(pojos.get(0).getMyShadowedString(), pojos.get(1).getMyShadowedString()); // not deduplicated
+
+        assertThrows(IllegalArgumentException.class, () -> mapper.mapAll(batch, PojoClass.class, Deduplication.of("unknown")));
+    }
+
+    @Test
+    public void should_dispatch_on_runtime_class() {
+        AutoMapper mapper = new AutoMapper();
+        MappingSite<PojoClass> site = mapper.site(PojoClass.class);
+        PojoShadow pojoShadow = new PojoShadow("shadow");
+        pojoShadow.setMyLong(123L);
+
+        PojoClass fromShadow = site.map(pojoShadow); // shares PojoClass' bindings, reading its overriding getter
+        assertEquals("shadow", fromShadow.getMyShadowedString());
+        assertEquals(123L, fromShadow.getMyLong());
+        assertEquals(POJO_FOOBAR, site.map(POJO_FOOBAR));
+        assertEquals("shadow", site.map(pojoShadow).getMyShadowedString());
+        assertFalse(site.isMegamorphic());
+        assertNull(site.map(null));
+
+        site.map(LombokSimpleClass.builder().myString("Lombok").build());
+        assertEquals("Lombok", site.map(LombokSimpleClass.builder().myString("Lombok").build()).getMyString());
+        assertTrue(site.isMegamorphic());
+        assertEquals(POJO_FOOBAR, site.map(POJO_FOOBAR));
+    }
+
+    @Test
+    public void should_map_subclass_of_package_private_base() {
+        AutoMapper mapper = new AutoMapper();
+        PojoEntity entity = new PojoEntity();
+        entity.setId(3L);
+        entity.setName("entity");
+
+        PojoEntity copy = mapper.mapToInstance(entity, PojoEntity.class); // PojoEntityBase's getters are only callable through PojoEntity
+        assertEquals(Long.valueOf(3L), copy.getId());
+        assertEquals("entity", copy.getName());
+        assertEquals(Long.valueOf(3L), mapper.site(PojoEntity.class).map(entity).getId());
+        assertEquals(Long.valueOf(3L), mapper.freeze().mapToInstance(entity, PojoEntity.class).getId());
+    }
+
+    @Test
+    public void should_freeze_compiled_pairs() {
+        AutoMapper mapper = new AutoMapper();
+        mapper.warmUpPairs(singletonList(ClassPair.of(PojoClass.class, LombokSimpleClass.class)));
+
+        FrozenMapper frozen = mapper.freeze();
+        assertEquals(singletonList(ClassPair.of(PojoClass.class, LombokSimpleClass.class)), frozen.getPairs());
+        LombokSimpleClass lombok = frozen.mapToInstance(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals("Hello World", lombok.getMyString());
+        LombokSimpleClass.LombokSimpleClassBuilder builder = frozen.mapToBuilder(POJO_CANONICAL, LombokSimpleClass.class);
+        assertEquals(lombok, builder.build());
+        assertEquals("FooBar", frozen.map(POJO_FOOBAR, new LombokSimpleClass()).getMyString());
+
+        assertFalse(frozen.isFrozen(PojoClass.class, PojoClass.class));
+        assertThrows(IllegalArgumentException.class, () -> frozen.mapToInstance(POJO_CANONICAL, PojoClass.class));
+        assertThrows(IllegalArgumentException.class, () -> frozen.mapToInstance(new PojoShadow(), LombokSimpleClass.class)); // exact classes only
+
+        FrozenMapper explicitlyFrozen = mapper.freeze(singletonList(ClassPair.of(PojoClass.class, PojoClass.class)));
+        assertEquals(POJO_CANONICAL, explicitlyFrozen.mapToInstance(POJO_CANONICAL, PojoClass.class));
+        assertThrows(IllegalArgumentException.class, () -> explicitlyFrozen.mapToBuilder(POJO_CANONICAL, PojoClass.class)); // no builder
+    }
+
+    @Test
+    public void should_not_change_frozen_enum_mappings() {
+        AutoMapper mapper = new AutoMapper();
+        mapper.registerEnumMapping(SomeEnum.FOO, OtherEnum.BAZ);
+        FrozenMapper frozen = mapper.freeze(singletonList(ClassPair.of(PojoEnums.class, PojoOtherEnums.class)));
+        mapper.registerEnumMapping(SomeEnum.BAR, OtherEnum.BAZ); // after freezing
+
+        PojoEnums foo = new PojoEnums(), bar = new PojoEnums();
+        foo.setMyEnum(SomeEnum.FOO);
+        bar.setMyEnum(SomeEnum.BAR);
+        assertEquals(OtherEnum.BAZ, frozen.mapToInstance(foo, PojoOtherEnums.class).getMyEnum());
+        assertNull(frozen.mapToInstance(bar, PojoOtherEnums.class).getMyEnum());
+        assertEquals(OtherEnum.BAZ, mapper.mapToInstance(bar, PojoOtherEnums.class).getMyEnum());
+    }
+
+    @Test
+    public void should_map_to_and_from_maps() {
+        Map<String, Object> map = mapper.mapToMap(POJO_CANONICAL);
+        assertEquals(Arrays.asList("aAA", "myBoolean", "myBooleanWrapper", "myList", "myLong", "myNumber", "myShadowedString", "myShort", "myString", "unused"),
+                new ArrayList<>(map.keySet()));
+        assertEquals(123L, map.get("myLong"));
+        assertEquals(POJO_CANONICAL, mapper.mapFromMap(map, PojoClass.class));
+
+        Map<String, Object> json = new HashMap<>();
+        json.put("myLong", 7); // Integer
+        json.put("myShort", 9.0); // Double
+        json.put("myString", "json");
+        json.put("unknown", "ignored");
+        LombokSimpleClass lombok = mapper.<LombokSimpleClass.LombokSimpleClassBuilder>mapFromMapToBuilder(json, LombokSimpleClass.class).build();
+        assertEquals(7L, lombok.getMyLong());
+        assertEquals((short)9, lombok.getMyShort());
+        assertEquals("json", lombok.getMyString());
+
+        json.put("myShort", 9.5); // not integral, skipped
+        assertEquals((short)0, mapper.mapFromMap(json, LombokSimpleClass.class).getMyShort());
+
+        Map<String, Object> enums = new HashMap<>();
+        enums.put("myName", "BAR");
+        assertEquals(SomeEnum.BAR, mapper.mapFromMap(enums, PojoOtherEnums.class).getMyName());
+    }
+
+    @Test
+    public void should_map_all_async() {
+        List<PojoClass> pojos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            PojoSlowGetter pojo = new PojoSlowGetter();
+            pojo.setMyString("pojo" + i);
+            pojos.add(pojo);
+        }
+        pojos.add(null);
+
+        List<LombokSimpleClass> lombok = mapper.mapAllAsync(pojos, LombokSimpleClass.class, 4, ForkJoinPool.commonPool()).join();
+        assertEquals(21, lombok.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("pojo" + i, lombok.get(i).getMyString()); // in the sources' order
+        }
+        assertNull(lombok.get(20));
+
+        assertEquals("pojo3", mapper.mapAllAsync(pojos, PojoClass.class, 2).join().get(3).getMyString());
+        assertTrue(mapper.mapAllAsync(new ArrayList<PojoClass>(), PojoClass.class, 2).join().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> mapper.mapAllAsync(pojos, PojoClass.class, 0));
+    }
 }
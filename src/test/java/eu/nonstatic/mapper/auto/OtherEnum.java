@@ -0,0 +1,6 @@
+package eu.nonstatic.mapper.auto;
+
+public enum OtherEnum {
+    FOO,
+    BAZ // BAR's counterpart
+}
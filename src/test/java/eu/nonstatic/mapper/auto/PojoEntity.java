@@ -0,0 +1,14 @@
+package eu.nonstatic.mapper.auto;
+
+public class PojoEntity extends PojoEntityBase {
+
+    private String name;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
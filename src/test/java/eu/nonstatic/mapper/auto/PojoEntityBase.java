@@ -0,0 +1,17 @@
+package eu.nonstatic.mapper.auto;
+
+/**
+ * Package-private, as abstract base entities often are: its accessors may only be called through PojoEntity's
+ */
+abstract class PojoEntityBase {
+
+    private Long id;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
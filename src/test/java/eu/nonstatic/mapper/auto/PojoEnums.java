@@ -0,0 +1,32 @@
+package eu.nonstatic.mapper.auto;
+
+public class PojoEnums {
+
+    private SomeEnum myEnum;
+    private String myName;
+    private OtherEnum myOther;
+
+    public SomeEnum getMyEnum() {
+        return myEnum;
+    }
+
+    public void setMyEnum(SomeEnum myEnum) {
+        this.myEnum = myEnum;
+    }
+
+    public String getMyName() {
+        return myName;
+    }
+
+    public void setMyName(String myName) {
+        this.myName = myName;
+    }
+
+    public OtherEnum getMyOther() {
+        return myOther;
+    }
+
+    public void setMyOther(OtherEnum myOther) {
+        this.myOther = myOther;
+    }
+}
@@ -0,0 +1,32 @@
+package eu.nonstatic.mapper.auto;
+
+public class PojoOtherEnums {
+
+    private OtherEnum myEnum;
+    private SomeEnum myName;
+    private String myOther;
+
+    public OtherEnum getMyEnum() {
+        return myEnum;
+    }
+
+    public void setMyEnum(OtherEnum myEnum) {
+        this.myEnum = myEnum;
+    }
+
+    public SomeEnum getMyName() {
+        return myName;
+    }
+
+    public void setMyName(SomeEnum myName) {
+        this.myName = myName;
+    }
+
+    public String getMyOther() {
+        return myOther;
+    }
+
+    public void setMyOther(String myOther) {
+        this.myOther = myOther;
+    }
+}
@@ -0,0 +1,14 @@
+package eu.nonstatic.mapper.auto;
+
+public class PojoSlowGetter extends PojoClass {
+
+    @Override
+    public String getMyString() {
+        try {
+            Thread.sleep(2); // lazy loading something
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return super.getMyString();
+    }
+}
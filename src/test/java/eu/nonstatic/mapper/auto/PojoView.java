@@ -0,0 +1,14 @@
+package eu.nonstatic.mapper.auto;
+
+import java.util.List;
+
+public interface PojoView {
+    String getMyString();
+    long getMyLong();
+    short getMyShort(); // backed by a Short
+    List<String> getMyList();
+
+    default String describe() {
+        return getMyString() + ' ' + getMyLong();
+    }
+}
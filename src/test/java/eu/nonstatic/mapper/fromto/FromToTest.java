@@ -1,8 +1,14 @@
 package eu.nonstatic.mapper.fromto;
 
 import eu.nonstatic.mapper.FromToMapper;
+import eu.nonstatic.mapper.Projection;
 import org.junit.jupiter.api.Test;
 
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class FromToTest {
@@ -43,6 +49,18 @@ public class FromToTest {
         assertEquals(zii, to.getPii());
     }
 
+    @Test
+    public void should_map_projection() {
+        FromToMapper mapper = new FromToMapper();
+        mapper.registerMapping(FromPojo.class, "zii", ToPojo.class, "pii");
+
+        ToPojo to = mapper.mapToInstance(from, ToPojo.class, Projection.of("zii"));
+
+        assertNull(to.getFoo());
+        assertNull(to.getWut());
+        assertEquals(zii, to.getPii());
+    }
+
     @Test
     public void should_map_to_builder() {
         FromToMapper mapper = new FromToMapper();
@@ -67,4 +85,80 @@ public class FromToTest {
         assertSame(foo, to.shadow);
         assertNull(((ToPojo)to).shadow);
     }
+
+    @Test
+    public void should_swap_mapping_snapshots() throws Exception {
+        FromToMapper mapper = new FromToMapper();
+        assertTrue(mapper.getMapping(FromPojo.class, ToPojo.class).isEmpty());
+        assertEquals(0, mapper.getMappingVersion());
+
+        mapper.registerMapping(FromPojo.class, "foo", ToPojo.class, "bar");
+        Collection<FromToMapper.MappingDescriptor> snapshot = mapper.getMapping(FromPojo.class, ToPojo.class);
+        assertEquals(1, mapper.getMappingVersion());
+
+        mapper.unregisterMapping(FromPojo.class, "wut", ToPojo.class); // not mapped, nothing changes
+        assertEquals(1, mapper.getMappingVersion());
+        mapper.unregisterMapping(FromPojo.class, "foo", ToPojo.class, "bar");
+        assertEquals(2, mapper.getMappingVersion());
+        assertEquals(1, snapshot.size()); // snapshots are immutable
+        assertTrue(mapper.getMapping(FromPojo.class, ToPojo.class).isEmpty());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reconfiguring = executor.submit(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    mapper.registerMapping(FromPojo.class, "foo", ToPojo.class, "bar");
+                    mapper.registerMapping(FromPojo.class, "zii", ToPojo.class, "pii");
+                    mapper.unregisterMapping(FromPojo.class, "foo", ToPojo.class);
+                    mapper.unregisterMapping(FromPojo.class, "zii", ToPojo.class, "pii");
+                }
+            });
+            while (!reconfiguring.isDone()) {
+                ToPojo to = mapper.mapToInstance(from, ToPojo.class);
+                assertSame(foo, to.getFoo() != null ? to.getFoo() : to.getBar());
+            }
+            reconfiguring.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(4002, mapper.getMappingVersion());
+    }
+
+    @Test
+    public void should_recompile_plan_on_mapping_change() {
+        FromToMapper mapper = new FromToMapper();
+        mapper.registerMapping(FromPojo.class, "foo", ToPojo.class, "bar");
+        assertSame(foo, mapper.<ToPojo.ToPojoBuilder>mapToBuilder(from, ToPojo.class).build().getBar());
+
+        ToPojo to = mapper.mapToInstance(from, ToPojo.class, "foo"); // excludes apply to auto mappings only
+        assertSame(foo, to.getBar());
+
+        mapper.registerMapping(FromPojo.class, "foo", ToPojo.class, "baz");
+        to = mapper.<ToPojo.ToPojoBuilder>mapToBuilder(from, ToPojo.class).build();
+        assertNull(to.getBar());
+        assertSame(foo, to.getBaz());
+
+        mapper.unregisterMapping(FromPojo.class, "foo", ToPojo.class);
+        to = mapper.<ToPojo.ToPojoBuilder>mapToBuilder(from, ToPojo.class).build();
+        assertSame(foo, to.getFoo());
+        assertNull(to.getBaz());
+    }
+
+    @Test
+    public void should_apply_supertypes_mappings() {
+        FromToMapper mapper = new FromToMapper();
+        mapper.registerMapping(FromSuperPojo.class, "foo", ToPojo.class, "bar");
+
+        ToPojo to = mapper.mapToInstance(from, ToPojo.class);
+        assertNull(to.getFoo());
+        assertSame(foo, to.getBar());
+        assertSame(foo, mapper.mapToInstance(from, ToPojoShadow.class).getBar());
+        assertTrue(mapper.getMapping(FromPojo.class, ToPojo.class).isEmpty()); // nothing registered for the runtime pair
+
+        mapper.registerMapping(FromPojo.class, "foo", ToPojoShadow.class, "shadow"); // nearer than the supertypes' one
+        ToPojoShadow toShadow = mapper.mapToInstance(from, ToPojoShadow.class);
+        assertNull(toShadow.getBar());
+        assertSame(foo, toShadow.shadow);
+        assertSame(foo, mapper.mapToInstance(from, ToPojo.class).getBar());
+    }
 }